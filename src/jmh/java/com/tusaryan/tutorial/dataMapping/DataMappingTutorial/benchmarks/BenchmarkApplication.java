@@ -0,0 +1,76 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.DataMappingTutorialApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//boots the application against its own in-memory H2 database and seeds large rosters with plain JDBC batches
+final class BenchmarkApplication {
+
+    //rows inserted here bypass hibernate, their ids start far above what the sequences hand out during a benchmark
+    static final long FIRST_SEEDED_EMPLOYEE_ID = 10_000_000L;
+
+    private static final int SEED_BATCH_SIZE = 5_000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return start(databaseName, Duration.ZERO, properties);
+    }
+
+    //databaseLatency is added to every statement, see SimulatedLatencyDataSource
+    static ConfigurableApplicationContext start(String databaseName, Duration databaseLatency, String... properties) {
+        String[] defaults = {
+                "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=warn"
+        };
+        return new SpringApplicationBuilder(DataMappingTutorialApplication.class)
+                .properties(Stream.concat(Stream.of(defaults), Stream.of(properties)).toArray(String[]::new))
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(SimulatedLatencyDataSource.forHikariPools(databaseLatency)))
+                .run();
+    }
+
+    //inserts count employees starting at firstEmployeeId and makes them workers of the department
+    static void seedWorkers(JdbcTemplate jdbcTemplate, long departmentId, long firstEmployeeId, int count) {
+        insertEmployees(jdbcTemplate, firstEmployeeId, count);
+        batched(firstEmployeeId, count, ids -> jdbcTemplate.batchUpdate(
+                "insert into worker_department_mapping (employee_id, department_id) values (?, ?)",
+                ids.stream().map(id -> new Object[]{id, departmentId}).toList()));
+    }
+
+    static void seedFreelancers(JdbcTemplate jdbcTemplate, long departmentId, long firstEmployeeId, int count) {
+        insertEmployees(jdbcTemplate, firstEmployeeId, count);
+        batched(firstEmployeeId, count, ids -> jdbcTemplate.batchUpdate(
+                "insert into freelancer_department_mapping (employee_id, department_id) values (?, ?)",
+                ids.stream().map(id -> new Object[]{id, departmentId}).toList()));
+    }
+
+    private static void insertEmployees(JdbcTemplate jdbcTemplate, long firstEmployeeId, int count) {
+        batched(firstEmployeeId, count, ids -> jdbcTemplate.batchUpdate(
+                "insert into employees (id, name, version) values (?, ?, 0)",
+                ids.stream().map(id -> new Object[]{id, "Employee " + id}).toList()));
+    }
+
+    private static void batched(long firstId, int count, Consumer<List<Long>> batch) {
+        List<Long> ids = new ArrayList<>(SEED_BATCH_SIZE);
+        for (long id = firstId; id < firstId + count; id++) {
+            ids.add(id);
+            if (ids.size() == SEED_BATCH_SIZE) {
+                batch.accept(ids);
+                ids = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+        if (!ids.isEmpty()) batch.accept(ids);
+    }
+}
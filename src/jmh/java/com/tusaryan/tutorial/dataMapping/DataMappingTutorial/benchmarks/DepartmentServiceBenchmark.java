@@ -0,0 +1,130 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.EmployeeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+//hot paths of DepartmentService and the JSON serialization of its read model, for departments with 10, 1k and 100k members
+//(half workers, half freelancers). caching is off, every call measures the database path.
+//allocation rates come from the GC profiler (-prof gc, on by default in the benchmarks profile).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DepartmentServiceBenchmark {
+
+    //employees that are moved between the two departments by the assignment benchmarks
+    private static final int MOVERS = 1_000;
+
+    @Param({"10", "1000", "100000"})
+    private int rosterSize;
+
+    private ConfigurableApplicationContext context;
+
+    private DepartmentService departmentService;
+
+    private ObjectMapper objectMapper;
+
+    private Long departmentId;
+
+    private Long otherDepartmentId;
+
+    private Long managerId;
+
+    private Long[] moverIds;
+
+    //which department each mover currently works in / whether it currently is a freelancer of departmentId
+    private boolean[] moverInOtherDepartment;
+
+    private boolean[] moverIsFreelancer;
+
+    private int nextWorkerMove;
+
+    private int nextFreelancerMove;
+
+    private DepartmentView departmentView;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("service" + rosterSize, "spring.main.web-application-type=none", "spring.cache.type=none");
+        departmentService = context.getBean(DepartmentService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        EmployeeService employeeService = context.getBean(EmployeeService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        departmentId = departmentService.createNewDepartment(department("Benchmark")).id();
+        otherDepartmentId = departmentService.createNewDepartment(department("Other")).id();
+        managerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Manager").build()).id();
+        departmentService.assignManagerToDepartment(departmentId, managerId);
+
+        int workers = rosterSize / 2;
+        BenchmarkApplication.seedWorkers(jdbcTemplate, departmentId, BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID, workers);
+        BenchmarkApplication.seedFreelancers(jdbcTemplate, departmentId, BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID + workers, rosterSize - workers);
+
+        moverIds = new Long[MOVERS];
+        moverInOtherDepartment = new boolean[MOVERS];
+        moverIsFreelancer = new boolean[MOVERS];
+        for (int i = 0; i < MOVERS; i++) {
+            moverIds[i] = employeeService.createNewEmployee(EmployeeEntity.builder().name("Mover " + i).build()).id();
+        }
+
+        departmentView = departmentService.getDepartmentById(departmentId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //moves a worker back and forth between the two departments, so the roster sizes stay the same
+    @Benchmark
+    public MembershipAck assignWorkerToDepartment() {
+        int mover = nextWorkerMove++ % MOVERS;
+        moverInOtherDepartment[mover] = !moverInOtherDepartment[mover];
+        return departmentService.assignWorkerToDepartment(moverInOtherDepartment[mover] ? otherDepartmentId : departmentId, moverIds[mover]);
+    }
+
+    //alternately adds and removes a freelancer, so every second call is a remove
+    @Benchmark
+    public MembershipAck assignFreelancerToDepartment() {
+        int mover = nextFreelancerMove++ % MOVERS;
+        moverIsFreelancer[mover] = !moverIsFreelancer[mover];
+        return moverIsFreelancer[mover]
+                ? departmentService.assignFreelancerToDepartment(departmentId, moverIds[mover])
+                : departmentService.removeFreelancerFromDepartment(departmentId, moverIds[mover]);
+    }
+
+    @Benchmark
+    public DepartmentView assignedDepartmentOfManager() {
+        return departmentService.assignedDepartmentOfManager(managerId);
+    }
+
+    //department with its full rosters, what GET /departments/{id} does on a cache miss
+    @Benchmark
+    public DepartmentView getDepartmentById() {
+        return departmentService.getDepartmentById(departmentId);
+    }
+
+    //the response body of GET /departments/{id}, with the ObjectMapper the controllers use
+    @Benchmark
+    public byte[] serializeDepartment() throws Exception {
+        return objectMapper.writeValueAsBytes(departmentView);
+    }
+
+    private static DepartmentEntity department(String title) {
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle(title);
+        return department;
+    }
+}
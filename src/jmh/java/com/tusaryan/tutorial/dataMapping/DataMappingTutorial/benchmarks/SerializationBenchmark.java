@@ -0,0 +1,70 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.serialization.ViewSerializers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//response body of GET /departments/{id} in every wire format, for departments with 10, 1k and 100k members.
+// reflection -> JSON the way it was written before ViewSerializers (jackson's bean serializer)
+// json/cbor/smile -> ViewSerializers with the respective generator, what the controllers use now
+//time per response from the scores, allocations per response from the GC profiler (gc.alloc.rate.norm, -prof gc is
+//on by default in the benchmarks profile). the bytes on the wire are printed once per trial, they don't change between calls.
+//no spring context, the ObjectMappers are built like WireFormatConfig builds them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int rosterSize;
+
+    @Param({"reflection", "json", "cbor", "smile"})
+    private String format;
+
+    private ObjectWriter writer;
+
+    private DepartmentView department;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = switch (format) {
+            case "reflection" -> new ObjectMapper();
+            case "json" -> new ObjectMapper().registerModule(new ViewSerializers());
+            case "cbor" -> new ObjectMapper(new CBORFactory()).registerModule(new ViewSerializers());
+            case "smile" -> new ObjectMapper(new SmileFactory()).registerModule(new ViewSerializers());
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        writer = objectMapper.writerFor(DepartmentView.class);
+
+        //same names as the seeded benchmark data, half workers, half freelancers
+        int workers = rosterSize / 2;
+        department = new DepartmentView(1L, "Benchmark", 1L, 1L, new EmployeeView(1L, "Manager"),
+                employees(BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID, workers),
+                employees(BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID + workers, rosterSize - workers));
+
+        System.out.printf("%n%s, %d members: %d bytes per response%n", format, rosterSize, writer.writeValueAsBytes(department).length);
+    }
+
+    @Benchmark
+    public byte[] serializeDepartment() throws Exception {
+        return writer.writeValueAsBytes(department);
+    }
+
+    private static List<EmployeeView> employees(long firstId, int count) {
+        List<EmployeeView> employees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) employees.add(new EmployeeView(firstId + i, "Employee " + (firstId + i)));
+        return employees;
+    }
+}
@@ -0,0 +1,88 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+//an in-memory H2 database answers in microseconds, a real one is a network round trip away. this adds that round trip:
+//every statement execution, commit and rollback sleeps for the given latency before it goes to H2. the thread is blocked
+//(a platform thread) or unmounted (a virtual thread) while the connection stays borrowed, like waiting on a socket.
+final class SimulatedLatencyDataSource extends DelegatingDataSource {
+
+    private final long latencyNanos;
+
+    SimulatedLatencyDataSource(DataSource targetDataSource, Duration latency) {
+        super(targetDataSource);
+        this.latencyNanos = latency.toNanos();
+    }
+
+    //puts the latency between spring boot's Hikari pool and H2, the pool itself (and everything above it) stays as it is
+    static BeanPostProcessor forHikariPools(Duration latency) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource pool && !latency.isZero()) {
+                    pool.setDataSource(new SimulatedLatencyDataSource(
+                            new DriverManagerDataSource(pool.getJdbcUrl(), pool.getUsername(), pool.getPassword()), latency));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return delayed(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return delayed(super.getConnection(username, password));
+    }
+
+    private Connection delayed(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("commit") || method.getName().equals("rollback")) roundTrip();
+                    Object result = invoke(connection, method, args);
+                    //statements handed out by the connection get the latency on every execute*
+                    if (result instanceof Statement statement) return delayed(statement, method.getReturnType());
+                    return result;
+                });
+    }
+
+    private Object delayed(Statement statement, Class<?> statementType) {
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{statementType},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) roundTrip();
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private void roundTrip() throws SQLException {
+        try {
+            Thread.sleep(Duration.ofNanos(latencyNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted during the simulated round trip", e);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
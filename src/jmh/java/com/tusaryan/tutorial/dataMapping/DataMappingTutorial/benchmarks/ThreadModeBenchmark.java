@@ -0,0 +1,132 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+//starts the application twice against an in-memory H2 database, once with the platform thread tomcat pool and once with
+//virtual threads, and hammers GET /departments/{id} with many concurrent clients. prints throughput and latency percentiles.
+//caching is switched off so every request really waits on the database.
+//H2 alone answers in microseconds, so every statement, commit and rollback gets a simulated network round trip
+//(SimulatedLatencyDataSource) and the pool is larger than tomcat's 200 platform threads. then the platform thread mode
+//can have at most 200 requests waiting on the database at once, the virtual thread mode as many as the pool has connections.
+//arguments: [concurrency] [requests per mode] [round trip latency in ms] [connection pool size]
+//./mvnw -P benchmarks test-compile exec:exec -Dbenchmark.mainClass=com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks.ThreadModeBenchmark -Dbenchmark.args="2000 200000 2 400"
+public class ThreadModeBenchmark {
+
+    private static int clients = 2000;
+    private static int measuredRequests = 200_000;
+    private static Duration databaseLatency = Duration.ofMillis(2);
+    private static int poolSize = 400;
+    private static final int WARMUP_REQUESTS = 20_000;
+    private static final int DEPARTMENTS = 100;
+    private static final int WORKERS_PER_DEPARTMENT = 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) clients = Integer.parseInt(args[0]);
+        if (args.length > 1) measuredRequests = Integer.parseInt(args[1]);
+        if (args.length > 2) databaseLatency = Duration.ofMillis(Long.parseLong(args[2]));
+        if (args.length > 3) poolSize = Integer.parseInt(args[3]);
+
+        Result platformThreads = run(false);
+        Result virtualThreads = run(true);
+
+        System.out.println();
+        System.out.printf("concurrency %d, %d requests per mode, %d ms per database round trip, pool of %d connections%n",
+                clients, measuredRequests, databaseLatency.toMillis(), poolSize);
+        System.out.println(platformThreads.describe("platform threads"));
+        System.out.println(virtualThreads.describe("virtual threads "));
+    }
+
+    private static Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start("threadmode" + virtualThreads, databaseLatency,
+                "server.port=0",
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "spring.cache.type=none")) {
+            List<Long> departmentIds = seed(context);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/departments/";
+
+            load(baseUrl, departmentIds, WARMUP_REQUESTS);
+            long started = System.nanoTime();
+            long[] latencies = load(baseUrl, departmentIds, measuredRequests);
+            return new Result(latencies, System.nanoTime() - started);
+        }
+    }
+
+    //workers are inserted with plain JDBC batches, a few statements per department even with the simulated latency
+    private static List<Long> seed(ConfigurableApplicationContext context) {
+        DepartmentService departmentService = context.getBean(DepartmentService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Long> departmentIds = new ArrayList<>();
+        for (int d = 0; d < DEPARTMENTS; d++) {
+            DepartmentEntity department = new DepartmentEntity();
+            department.setTitle("Department " + d);
+            Long departmentId = departmentService.createNewDepartment(department).id();
+            BenchmarkApplication.seedWorkers(jdbcTemplate, departmentId,
+                    BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID + (long) d * WORKERS_PER_DEPARTMENT, WORKERS_PER_DEPARTMENT);
+            departmentIds.add(departmentId);
+        }
+        return departmentIds;
+    }
+
+    //"clients" concurrent clients, each sends its share of the requests one after the other
+    private static long[] load(String baseUrl, List<Long> departmentIds, int requests) throws Exception {
+        int requestsPerClient = requests / clients;
+        List<Future<long[]>> clientResults = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build()) {
+            for (int c = 0; c < clients; c++) {
+                clientResults.add(executor.submit(() -> {
+                    long[] latencies = new long[requestsPerClient];
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        Long departmentId = departmentIds.get(ThreadLocalRandom.current().nextInt(departmentIds.size()));
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + departmentId)).GET().build();
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[r] = System.nanoTime() - sent;
+                        if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode());
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[requestsPerClient * clients];
+            int position = 0;
+            for (Future<long[]> client : clientResults) {
+                long[] latencies = client.get();
+                System.arraycopy(latencies, 0, all, position, latencies.length);
+                position += latencies.length;
+            }
+            return all;
+        }
+    }
+
+    private record Result(long[] latencies, long elapsedNanos) {
+
+        String describe(String mode) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double throughput = sorted.length / (elapsedNanos / 1_000_000_000.0);
+            return String.format("%s: %,.0f req/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    mode, throughput, millis(sorted, 0.50), millis(sorted, 0.99), sorted[sorted.length - 1] / 1_000_000.0);
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.OrgSnapshotService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+//restart with and without the org snapshot (OrgSnapshotService). seeds an in-memory H2 database once and writes a snapshot
+//of it, then starts the application again on the same database (the schema is migrated once, the data survives the restart),
+//once with cold caches and once with the snapshot. prints the startup time and how long the first and the second
+//read of every department take, the first pass is the warm-up that the snapshot saves.
+//arguments: [departments] [members per department]
+//./mvnw -P benchmarks test-compile exec:exec -Dbenchmark.mainClass=com.tusaryan.tutorial.dataMapping.DataMappingTutorial.benchmarks.WarmStartBenchmark -Dbenchmark.args="1000 200"
+public class WarmStartBenchmark {
+
+    private static final String DATABASE = "warmstart";
+
+    private static int departments = 1000;
+    private static int membersPerDepartment = 200;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) departments = Integer.parseInt(args[0]);
+        if (args.length > 1) membersPerDepartment = Integer.parseInt(args[1]);
+        Path snapshot = Files.createTempFile("org-snapshot", ".bin");
+
+        List<Long> departmentIds;
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(DATABASE,
+                "spring.main.web-application-type=none", "app.snapshot.path=" + snapshot)) {
+            departmentIds = seed(context);
+            context.getBean(OrgSnapshotService.class).writeSnapshot();
+        }
+
+        Result cold = restart(snapshot, false, departmentIds);
+        Result warm = restart(snapshot, true, departmentIds);
+
+        System.out.println();
+        System.out.printf("%d departments with %d members each, snapshot of %,d bytes%n", departments, membersPerDepartment, Files.size(snapshot));
+        System.out.println(cold.describe("cold caches  "));
+        System.out.println(warm.describe("org snapshot "));
+        Files.deleteIfExists(snapshot);
+    }
+
+    private static Result restart(Path snapshot, boolean warmStart, List<Long> departmentIds) {
+        long started = System.nanoTime();
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(DATABASE,
+                "spring.main.web-application-type=none",
+                "spring.cache.caffeine.spec=maximumSize=" + Math.max(10_000, departments * 2) + ",expireAfterWrite=10m",
+                "app.snapshot.enabled=" + warmStart,
+                "app.snapshot.path=" + snapshot,
+                "app.snapshot.write-on-shutdown=false")) {
+            long startup = System.nanoTime() - started;
+            DepartmentService departmentService = context.getBean(DepartmentService.class);
+            long firstPass = readAll(departmentService, departmentIds);
+            long secondPass = readAll(departmentService, departmentIds);
+            return new Result(startup, firstPass, secondPass);
+        }
+    }
+
+    private static long readAll(DepartmentService departmentService, List<Long> departmentIds) {
+        long started = System.nanoTime();
+        for (Long departmentId : departmentIds) {
+            if (departmentService.getDepartmentById(departmentId) == null) throw new IllegalStateException("Department " + departmentId + " is missing");
+        }
+        return System.nanoTime() - started;
+    }
+
+    //half of the members are workers, half freelancers, inserted with plain JDBC batches
+    private static List<Long> seed(ConfigurableApplicationContext context) {
+        DepartmentService departmentService = context.getBean(DepartmentService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        int workers = membersPerDepartment / 2;
+        List<Long> departmentIds = new ArrayList<>();
+        for (int d = 0; d < departments; d++) {
+            DepartmentEntity department = new DepartmentEntity();
+            department.setTitle("Department " + d);
+            Long departmentId = departmentService.createNewDepartment(department).id();
+            long firstEmployeeId = BenchmarkApplication.FIRST_SEEDED_EMPLOYEE_ID + (long) d * membersPerDepartment;
+            BenchmarkApplication.seedWorkers(jdbcTemplate, departmentId, firstEmployeeId, workers);
+            BenchmarkApplication.seedFreelancers(jdbcTemplate, departmentId, firstEmployeeId + workers, membersPerDepartment - workers);
+            departmentIds.add(departmentId);
+        }
+        return departmentIds;
+    }
+
+    private record Result(long startupNanos, long firstPassNanos, long secondPassNanos) {
+
+        String describe(String mode) {
+            return String.format("%s: startup %,d ms, first read of every department %,d ms, second read %,d ms",
+                    mode, startupNanos / 1_000_000, firstPassNanos / 1_000_000, secondPassNanos / 1_000_000);
+        }
+    }
+}
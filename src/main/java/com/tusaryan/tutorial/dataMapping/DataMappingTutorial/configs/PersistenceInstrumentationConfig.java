@@ -0,0 +1,52 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation.PersistenceMetricsInterceptor;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation.StatementCountingInspector;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation.StatementCountingJdbcTemplate;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class PersistenceInstrumentationConfig implements WebMvcConfigurer {
+
+    private final PersistenceMetricsInterceptor persistenceMetricsInterceptor;
+
+    public PersistenceInstrumentationConfig(PersistenceMetricsInterceptor persistenceMetricsInterceptor) {
+        this.persistenceMetricsInterceptor = persistenceMetricsInterceptor;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCountingInspector());
+    }
+
+    //spring boot's JdbcTemplate with the same spring.jdbc.template.* settings, boot's own backs off because of this one
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties) {
+        JdbcTemplate jdbcTemplate = new StatementCountingJdbcTemplate(dataSource);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        return jdbcTemplate;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(persistenceMetricsInterceptor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(persistenceMetricsInterceptor);
+    }
+}
@@ -0,0 +1,27 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+//app.datasource.* settings of the read replicas, only used when app.datasource.routing.enabled=true.
+//the primary is still configured through spring.datasource.*, the replicas share its spring.datasource.hikari.* pool settings.
+@ConfigurationProperties("app.datasource")
+public record ReadReplicaProperties(List<Replica> replicas,
+                                    //a replica that failed to hand out a connection is skipped for this long
+                                    @DefaultValue("30s") Duration replicaRetryInterval,
+                                    //a dead replica should fail fast, the read then goes to the next replica or the primary
+                                    @DefaultValue("2s") Duration replicaConnectionTimeout,
+                                    //after a write of a client commits, its reads go to the primary for this long so it sees it (0 = off)
+                                    @DefaultValue("0s") Duration readYourWritesWindow) {
+
+    public ReadReplicaProperties {
+        replicas = replicas == null ? List.of() : List.copyOf(replicas);
+    }
+
+    //username/password default to the ones of the primary
+    public record Replica(String url, String username, String password) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//replaces spring boot's single datasource with primary + read replicas, see ReadWriteRoutingDataSource.
+//spring boot's own DataSource bean backs off as soon as we define one, so the primary pool is built here as well.
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaRoutingConfig {
+
+    //pools are created here and not as beans -> with virtual threads they get their admission control here too
+    //(VirtualThreadConfig only wraps the single pool spring boot would create)
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties primaryProperties,
+                                                                 ReadReplicaProperties readReplicaProperties,
+                                                                 Environment environment,
+                                                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                                                 @Value("${app.datasource.admission-timeout:10s}") Duration admissionTimeout) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primaryPool = pool(binder, "primary", primaryProperties.determineUrl(),
+                primaryProperties.determineUsername(), primaryProperties.determinePassword());
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < readReplicaProperties.replicas().size(); i++) {
+            ReadReplicaProperties.Replica replica = readReplicaProperties.replicas().get(i);
+            HikariDataSource replicaPool = pool(binder, "replica-" + i, replica.url(),
+                    replica.username() == null ? primaryProperties.determineUsername() : replica.username(),
+                    replica.password() == null ? primaryProperties.determinePassword() : replica.password());
+            replicaPool.setConnectionTimeout(readReplicaProperties.replicaConnectionTimeout().toMillis());
+            //a replica that is down at startup must not stop the application
+            replicaPool.setInitializationFailTimeout(-1);
+            replicas.add(virtualThreads ? admissionControlled(replicaPool, admissionTimeout) : replicaPool);
+        }
+
+        return new ReadWriteRoutingDataSource(virtualThreads ? admissionControlled(primaryPool, admissionTimeout) : primaryPool,
+                replicas, readReplicaProperties.replicaRetryInterval(), readReplicaProperties.readYourWritesWindow());
+    }
+
+    //the one everybody (JPA, JdbcTemplate) uses
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    private static HikariDataSource pool(Binder binder, String name, String url, String username, String password) {
+        HikariDataSource pool = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        //same spring.datasource.hikari.* settings (maximum-pool-size, ...) for every pool
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        return pool;
+    }
+
+    private static DataSource admissionControlled(HikariDataSource pool, Duration admissionTimeout) {
+        return new AdmissionControlledDataSource(pool, pool.getMaximumPoolSize(), admissionTimeout);
+    }
+}
@@ -0,0 +1,155 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//sends the connections of read only transactions (@Transactional(readOnly = true), e.g. the roster pages and streams)
+//to the replicas and everything else to the primary.
+//the routing decision needs the read only flag (and the name) of the transaction, which spring sets only after the
+//transaction has begun -> this has to sit behind a LazyConnectionDataSourceProxy, which asks for the connection at the first statement.
+// - read only transactions named PRIMARY_READ stay on the primary, see primaryReadTransaction()
+// - replicas are used round robin
+// - a replica that can't hand out a connection is marked down for replicaRetryInterval, the read moves on to the
+//   next replica and, when none is left, to the primary
+// - with a read-your-writes window, the reads of a client go to the primary for a while after one of its writes committed,
+//   so a client that just assigned a worker doesn't read a replica that hasn't replicated it yet. see ReadYourWrites
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    public static final String PRIMARY_READ = "primaryRead";
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final long replicaRetryNanos;
+
+    private final ReadYourWrites readYourWrites;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                      Duration replicaRetryInterval, Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.replicaRetryNanos = replicaRetryInterval.toNanos();
+        this.readYourWrites = new ReadYourWrites(readYourWritesWindow);
+    }
+
+    //read only, but always on the primary: loads whose result is kept and handed out later (OrgCache, HeadcountCounters,
+    //EmployeeNameIndex, the org snapshot). a lagging replica would get its old rows cached, with a fresh ETag, for as long
+    //as the cache keeps them. without routing this is just a read only transaction.
+    public static TransactionTemplate primaryReadTransaction(PlatformTransactionManager transactionManager) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.setName(PRIMARY_READ);
+        return transaction;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!routeToReplica()) return primary.getConnection();
+
+        int first = nextReplica.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(first + i, replicas.size()));
+            if (!replica.isAvailable()) continue;
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.markUp();
+                return connection;
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        //no healthy replica -> the primary can answer reads as well
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        //only the pool credentials are used, same as spring boot's own datasource
+        return getConnection();
+    }
+
+    //how many replicas currently take reads
+    public int getAvailableReplicas() {
+        return (int) replicas.stream().filter(Replica::isAvailable).count();
+    }
+
+    //closes the pools, also when they are wrapped (AdmissionControlledDataSource)
+    @Override
+    public void close() throws Exception {
+        closePool(primary);
+        for (Replica replica : replicas) closePool(replica.dataSource);
+    }
+
+    private static void closePool(DataSource dataSource) throws Exception {
+        if (dataSource.isWrapperFor(AutoCloseable.class)) dataSource.unwrap(AutoCloseable.class).close();
+    }
+
+    private boolean routeToReplica() {
+        if (replicas.isEmpty()) return false;
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWrite();
+            return false;
+        }
+        if (PRIMARY_READ.equals(TransactionSynchronizationManager.getCurrentTransactionName())) return false;
+        return !readYourWrites.isEnabled() || !readYourWrites.readsFromPrimary();
+    }
+
+    //connections outside of a transaction (schema creation at startup, ...) are not counted as writes
+    private void recordWrite() {
+        if (!readYourWrites.isEnabled() || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                readYourWrites.writeCommitted();
+            }
+        });
+    }
+
+    private final class Replica {
+
+        private final DataSource dataSource;
+
+        //0 = up, otherwise System.nanoTime() at which the replica gets tried again
+        private volatile long downUntil;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable() {
+            long until = downUntil;
+            return until == 0 || System.nanoTime() - until >= 0;
+        }
+
+        private void markUp() {
+            if (downUntil != 0) {
+                downUntil = 0;
+                log.info("Read replica {} is back", dataSource);
+            }
+        }
+
+        private void markDown(SQLException e) {
+            //can't be 0, 0 means up
+            downUntil = (System.nanoTime() + replicaRetryNanos) | 1;
+            log.warn("Read replica {} failed, sending its reads elsewhere for {} ms: {}",
+                    dataSource, replicaRetryNanos / 1_000_000, e.getMessage());
+        }
+    }
+}
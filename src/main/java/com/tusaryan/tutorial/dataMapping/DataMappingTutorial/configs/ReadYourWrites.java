@@ -0,0 +1,78 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+//read-your-writes per client. when a write made for a request commits, the response gets a cookie with the end of the
+//client's window, the reads of that client go to the primary until then. the cookie travels with the client, so this
+//works across instances and without a session. a client that doesn't send cookies back only reads its writes within
+//the same request. writes outside of a request (the assignment pipeline, startup) belong to no client.
+final class ReadYourWrites {
+
+    static final String COOKIE = "primary-reads-until";
+
+    //the end of the window of the current request, once it wrote (or sent the cookie)
+    private static final String PRIMARY_READS_UNTIL = ReadYourWrites.class.getName() + ".primaryReadsUntil";
+
+    private final long windowMillis;
+
+    ReadYourWrites(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    //true while the window of the client of the current request is open. the async part of a request (NDJSON streams)
+    //has the same request attributes, spring binds them on the task executor thread as well
+    boolean readsFromPrimary() {
+        ServletRequestAttributes attributes = currentRequest();
+        return attributes != null && System.currentTimeMillis() < primaryReadsUntil(attributes.getRequest());
+    }
+
+    //called after the commit of a write, still on the thread of the request
+    void writeCommitted() {
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null) return;
+        long until = System.currentTimeMillis() + windowMillis;
+        attributes.getRequest().setAttribute(PRIMARY_READS_UNTIL, until);
+
+        //a response that is written already can't get the cookie anymore, the window then holds for this request only
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+            response.addCookie(cookie);
+        }
+    }
+
+    private long primaryReadsUntil(HttpServletRequest request) {
+        if (request.getAttribute(PRIMARY_READS_UNTIL) instanceof Long until) return until;
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return 0;
+        for (Cookie cookie : cookies) {
+            if (!COOKIE.equals(cookie.getName())) continue;
+            try {
+                //the cookie comes from the client, it can't keep the client on the primary for longer than one window
+                long until = Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis() + windowMillis);
+                request.setAttribute(PRIMARY_READS_UNTIL, until);
+                return until;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes ? attributes : null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+
+//spring.threads.virtual.enabled=true is picked up by spring boot itself: tomcat handles every request on a new virtual thread
+//and the applicationTaskExecutor (MVC async, used by the NDJSON roster streams) runs its tasks on virtual threads.
+//what boot does not do is limit how many of those threads fight for the (small) connection pool, that is done here.
+//(with app.datasource.routing.enabled the pools are not beans, ReadReplicaRoutingConfig wraps them itself)
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    //the same pool spring boot would create (spring.datasource.* and spring.datasource.hikari.*), still a HikariDataSource
+    //bean for everything that wants the pool itself (pool metrics, health). boot's own backs off because of the beans here.
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    @ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "false", matchIfMissing = true)
+    public HikariDataSource hikariDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    //the one everybody (JPA, JdbcTemplate) uses, as many permits as the pool has connections
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "false", matchIfMissing = true)
+    public AdmissionControlledDataSource dataSource(HikariDataSource hikariDataSource,
+                                                    @Value("${app.datasource.admission-timeout:10s}") Duration admissionTimeout) {
+        return new AdmissionControlledDataSource(hikariDataSource, hikariDataSource.getMaximumPoolSize(), admissionTimeout);
+    }
+}
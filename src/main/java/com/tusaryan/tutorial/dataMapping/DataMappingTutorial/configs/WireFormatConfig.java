@@ -0,0 +1,36 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.serialization.ViewSerializers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+//content negotiation for the read endpoints: "Accept: application/cbor" or "Accept: application/x-jackson-smile" get a
+//binary encoding of the same document, everything else stays JSON. both are smaller than JSON (no quotes, numbers and
+//lengths in binary, Smile also shares repeated field names like "id"/"name" of the rosters) and cheaper to write.
+//spring would register these converters by itself, but with a plain ObjectMapper. built from spring boot's
+//Jackson2ObjectMapperBuilder they get the same spring.jackson.* settings and modules as the JSON one.
+@Configuration
+public class WireFormatConfig {
+
+    //spring boot registers every Module bean with its ObjectMapper(s), so JSON, CBOR and Smile share the serializers
+    @Bean
+    public Module viewSerializers() {
+        return new ViewSerializers();
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,25 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.AssignmentCommandView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.AssignmentPipeline;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+//status of assignments accepted with "Prefer: respond-async", see DepartmentController.assignWorkerToDepartment
+@RestController
+@RequestMapping(path = "/assignments")
+public class AssignmentController {
+
+    private final AssignmentPipeline assignmentPipeline;
+
+    public AssignmentController(AssignmentPipeline assignmentPipeline) {
+        this.assignmentPipeline = assignmentPipeline;
+    }
+
+    @GetMapping(path = "/{commandId}")
+    public AssignmentCommandView getAssignment(@PathVariable String commandId) {
+        return assignmentPipeline.getCommand(commandId);
+    }
+}
@@ -0,0 +1,26 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.CacheStats;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.CacheStatsService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "/caches")
+public class CacheController {
+
+    private final CacheStatsService cacheStatsService;
+
+    public CacheController(CacheStatsService cacheStatsService) {
+        this.cacheStatsService = cacheStatsService;
+    }
+
+    //hit, miss and eviction counts of every cache
+    @GetMapping
+    public List<CacheStats> getCacheStats() {
+        return cacheStatsService.getCacheStats();
+    }
+}
@@ -1,50 +1,266 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.AssignmentCommandView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.BatchAssignmentResult;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeadcount;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ETagged;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.RosterPage;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.AssignmentPipeline;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.AssignmentQueueFullException;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.SerializedResponseCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping(path = "/departments")
 public class DepartmentController {
 
+    //flush the NDJSON stream every so many rows, so that the client gets the first rows early without a flush per row
+    private static final int NDJSON_FLUSH_INTERVAL = 1000;
+
+    //RFC 7240, "Prefer: respond-async" -> 202 Accepted with the command instead of waiting for the commit
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final DepartmentService departmentService;
 
-    public DepartmentController(DepartmentService departmentService) {
+    private final AssignmentPipeline assignmentPipeline;
+
+    private final ObjectMapper objectMapper;
+
+    private final SerializedResponseCache responseCache;
+
+    private final Duration assignmentResponseTimeout;
+
+    public DepartmentController(DepartmentService departmentService, AssignmentPipeline assignmentPipeline, ObjectMapper objectMapper,
+                                SerializedResponseCache responseCache,
+                                @Value("${app.assignment-pipeline.response-timeout:5s}") Duration assignmentResponseTimeout) {
         this.departmentService = departmentService;
+        this.assignmentPipeline = assignmentPipeline;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.assignmentResponseTimeout = assignmentResponseTimeout;
     }
 
+    //conditional GET: the response carries an ETag, "If-None-Match: <etag>" -> 304 without a body. the ETag is checked
+    //before the department is loaded (one select of version and roster_version, also when the view is cached), so a 304
+    //never reads the rosters and is never stale, a change made through another instance changes the ETag right away.
+    //requests without If-None-Match don't pay for that check and go straight to the view.
+    //JSON, CBOR or Smile depending on the Accept header (see WireFormat), every format has its own ETag.
     @GetMapping("/{departmentId}")
-    public DepartmentEntity getDepartmentById(@PathVariable Long departmentId) {
-        return departmentService.getDepartmentById(departmentId);
+    public ResponseEntity<Object> getDepartmentById(@PathVariable Long departmentId, @RequestHeader HttpHeaders headers) {
+        WireFormat format = WireFormat.negotiate(headers.getAccept());
+        if (format == null) return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        String etag = null;
+        if (!ifNoneMatch.isEmpty()) {
+            String departmentETag = departmentService.getDepartmentETag(departmentId);
+            etag = departmentETag == null ? null : format.etag(departmentETag);
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+            }
+        }
+
+        //the serialized bytes are only kept for JSON
+        boolean cacheBytes = responseCache.isEnabled() && format == WireFormat.JSON;
+        byte[] cachedBytes = cacheBytes && etag != null ? responseCache.department(departmentId, etag) : null;
+        if (cachedBytes != null) return representation(etag, format, cachedBytes);
+
+        ETagged<DepartmentView> department = departmentService.getDepartmentWithETag(departmentId);
+        if (department == null) return ResponseEntity.ok().build();
+        etag = format.etag(department.etag());
+        if (!cacheBytes) return representation(etag, format, department.body());
+
+        cachedBytes = responseCache.department(departmentId, etag);
+        if (cachedBytes == null) {
+            try {
+                cachedBytes = objectMapper.writeValueAsBytes(department.body());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            responseCache.putDepartment(departmentId, etag, cachedBytes);
+        }
+        return representation(etag, format, cachedBytes);
+    }
+
+    //sizes of every department in one call, instead of loading each department and counting its rosters
+    @GetMapping(path = "/headcounts")
+    public List<DepartmentHeadcount> getHeadcounts() {
+        return departmentService.getHeadcounts();
+    }
+
+    @GetMapping(path = "/{departmentId}/headcount")
+    public DepartmentHeadcount getHeadcount(@PathVariable Long departmentId) {
+        return departmentService.getHeadcount(departmentId);
     }
 
     @PostMapping
-    public DepartmentEntity createNewDepartment(@RequestBody DepartmentEntity departmentEntity) {
+    public DepartmentView createNewDepartment(@RequestBody DepartmentEntity departmentEntity) {
         return departmentService.createNewDepartment(departmentEntity);
     }
 
     @PutMapping(path = "/{departmentId}/manager/{employeeId}")
-    public DepartmentEntity assignManagerToDepartment(@PathVariable Long departmentId,
-                                                     @PathVariable Long employeeId) {
+    public DepartmentView assignManagerToDepartment(@PathVariable Long departmentId,
+                                                   @PathVariable Long employeeId) {
         return departmentService.assignManagerToDepartment(departmentId, employeeId);
     }
 
     @GetMapping(path = "/assignedDepartmentOfManager/{employeeId}")
-    public DepartmentEntity getAssignedDepartmentOfManager (@PathVariable Long employeeId) {
+    public DepartmentView getAssignedDepartmentOfManager (@PathVariable Long employeeId) {
         return departmentService.assignedDepartmentOfManager(employeeId);
     }
 
+    //with app.assignment-pipeline.enabled the assignment is group committed with others (see AssignmentPipeline).
+    //the request waits for its batch to commit, or with "Prefer: respond-async" gets 202 + Location: /assignments/{commandId} right away.
+    //a batch that takes longer than response-timeout -> 503 + Retry-After, the command stays queued and can be polled at Location.
     @PutMapping(path = "/{departmentId}/worker/{employeeId}")
-    public DepartmentEntity assignWorkerToDepartment(@PathVariable Long departmentId,
-                                                      @PathVariable Long employeeId) {
-        return departmentService.assignWorkerToDepartment(departmentId, employeeId);
+    public ResponseEntity<Object> assignWorkerToDepartment(@PathVariable Long departmentId,
+                                                           @PathVariable Long employeeId,
+                                                           @RequestHeader(name = "Prefer", required = false) String prefer) {
+        if (!assignmentPipeline.isEnabled()) {
+            return ResponseEntity.ok(departmentService.assignWorkerToDepartment(departmentId, employeeId));
+        }
+
+        AssignmentPipeline.Submission submission = assignmentPipeline.submitWorkerAssignment(departmentId, employeeId);
+        if (RESPOND_ASYNC.equalsIgnoreCase(prefer)) {
+            AssignmentCommandView command = assignmentPipeline.getCommand(submission.commandId());
+            return ResponseEntity.accepted().location(URI.create("/assignments/" + submission.commandId())).body(command);
+        }
+        try {
+            //on a copy, the timeout must not complete the command itself
+            return ResponseEntity.ok(submission.result().copy()
+                    .orTimeout(assignmentResponseTimeout.toMillis(), TimeUnit.MILLISECONDS).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                        .location(URI.create("/assignments/" + submission.commandId()))
+                        .body(assignmentPipeline.getCommand(submission.commandId()));
+            }
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @DeleteMapping(path = "/{departmentId}/worker/{employeeId}")
+    public MembershipAck removeWorkerFromDepartment(@PathVariable Long departmentId,
+                                                    @PathVariable Long employeeId) {
+        return departmentService.removeWorkerFromDepartment(departmentId, employeeId);
     }
 
     @PutMapping(path = "/{departmentId}/freelancers/{employeeId}")
-    public DepartmentEntity assignFreelancerToDepartment(@PathVariable Long departmentId,
+    public MembershipAck assignFreelancerToDepartment(@PathVariable Long departmentId,
                                                       @PathVariable Long employeeId) {
         return departmentService.assignFreelancerToDepartment(departmentId, employeeId);
     }
 
+    @DeleteMapping(path = "/{departmentId}/freelancers/{employeeId}")
+    public MembershipAck removeFreelancerFromDepartment(@PathVariable Long departmentId,
+                                                        @PathVariable Long employeeId) {
+        return departmentService.removeFreelancerFromDepartment(departmentId, employeeId);
+    }
+
+    //body is a JSON array of employee ids, e.g. [1, 2, 3]
+    @PutMapping(path = "/{departmentId}/workers")
+    public BatchAssignmentResult assignWorkersToDepartment(@PathVariable Long departmentId,
+                                                           @RequestBody List<Long> employeeIds) {
+        return departmentService.assignWorkersToDepartment(departmentId, employeeIds);
+    }
+
+    @PutMapping(path = "/{departmentId}/freelancers")
+    public BatchAssignmentResult assignFreelancersToDepartment(@PathVariable Long departmentId,
+                                                               @RequestBody List<Long> employeeIds) {
+        return departmentService.assignFreelancersToDepartment(departmentId, employeeIds);
+    }
+
+    //keyset pagination -> GET /departments/1/workers?size=100, then ?afterId=<nextAfterId> for the next page
+    @GetMapping(path = "/{departmentId}/workers")
+    public RosterPage getWorkersOfDepartment(@PathVariable Long departmentId,
+                                            @RequestParam(required = false) Long afterId,
+                                            @RequestParam(required = false) Integer size) {
+        return departmentService.getWorkersPage(departmentId, afterId, size);
+    }
+
+    @GetMapping(path = "/{departmentId}/freelancers")
+    public RosterPage getFreelancersOfDepartment(@PathVariable Long departmentId,
+                                                @RequestParam(required = false) Long afterId,
+                                                @RequestParam(required = false) Integer size) {
+        return departmentService.getFreelancersPage(departmentId, afterId, size);
+    }
+
+    //whole roster as NDJSON (one JSON object per line). rows are written while they are read from the database.
+    @GetMapping(path = "/{departmentId}/workers/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamWorkersOfDepartment(@PathVariable Long departmentId) {
+        return ndjson(departmentId, departmentService::streamWorkers);
+    }
+
+    @GetMapping(path = "/{departmentId}/freelancers/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamFreelancersOfDepartment(@PathVariable Long departmentId) {
+        return ndjson(departmentId, departmentService::streamFreelancers);
+    }
+
+    private StreamingResponseBody ndjson(Long departmentId, BiConsumer<Long, Consumer<EmployeeView>> roster) {
+        //FLUSH_AFTER_WRITE_VALUE is on by default and would flush the socket after every single row
+        ObjectWriter writer = objectMapper.writerFor(EmployeeView.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                //jackson separates root values with a space by default, we write our own newline after each row instead
+                generator.setRootValueSeparator(null);
+                int[] written = {0};
+                roster.accept(departmentId, employee -> {
+                    try {
+                        writer.writeValue(generator, employee);
+                        generator.writeRaw('\n');
+                        if (++written[0] % NDJSON_FLUSH_INTERVAL == 1) generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+
+    //the content type is set here, spring then picks the converter for it (byte[] is written as it is)
+    private static ResponseEntity<Object> representation(String etag, WireFormat format, Object body) {
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).contentType(format.mediaType()).body(body);
+    }
+
+    //If-None-Match holds quoted ETags (possibly weak, W/"..."), or "*"
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        String quoted = "\"" + etag + "\"";
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || candidate.equals(quoted) || candidate.equals("W/" + quoted)) return true;
+        }
+        return false;
+    }
+
+    //backpressure of the assignment pipeline, the client should slow down and send the assignment again
+    @ExceptionHandler(AssignmentQueueFullException.class)
+    public ResponseEntity<String> assignmentQueueFull(AssignmentQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
 }
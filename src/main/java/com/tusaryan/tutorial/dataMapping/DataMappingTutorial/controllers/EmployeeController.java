@@ -1,7 +1,12 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
 
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeSearchPage;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.EmployeeService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -14,13 +19,38 @@ public class EmployeeController {
         this.employeeService = employeeService;
     }
 
+    //with the ETag spring answers "If-None-Match" itself (304 without a body).
+    //JSON, CBOR or Smile depending on the Accept header, see WireFormat
     @GetMapping("/{employeeId}")
-    public EmployeeEntity getEmployeeById(@PathVariable Long employeeId) {
-        return employeeService.getEmployeeById(employeeId);
+    public ResponseEntity<EmployeeView> getEmployeeById(@PathVariable Long employeeId,
+                                                        @RequestHeader HttpHeaders headers) {
+        WireFormat format = WireFormat.negotiate(headers.getAccept());
+        if (format == null) return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+
+        EmployeeView employee = employeeService.getEmployeeById(employeeId);
+        if (employee == null) return ResponseEntity.ok().build();
+        return ResponseEntity.ok()
+                .eTag(format.etag(employeeService.getEmployeeETag(employee)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.mediaType())
+                .body(employee);
+    }
+
+    //type-ahead -> GET /employees/search?prefix=ann&size=10, then &afterName=<nextAfterName>&afterId=<nextAfterId> for the next page.
+    //workerOf / freelancerOf = department id, only one of them at a time
+    @GetMapping(path = "/search")
+    public ResponseEntity<EmployeeSearchPage> searchEmployees(@RequestParam(required = false) String prefix,
+                                                              @RequestParam(required = false) Long workerOf,
+                                                              @RequestParam(required = false) Long freelancerOf,
+                                                              @RequestParam(required = false) String afterName,
+                                                              @RequestParam(required = false) Long afterId,
+                                                              @RequestParam(required = false) Integer size) {
+        if (workerOf != null && freelancerOf != null) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(employeeService.searchByName(prefix, workerOf, freelancerOf, afterName, afterId, size));
     }
 
     @PostMapping
-    public EmployeeEntity createNewEmployee(@RequestBody EmployeeEntity employeeEntity) {
+    public EmployeeView createNewEmployee(@RequestBody EmployeeEntity employeeEntity) {
         return employeeService.createNewEmployee(employeeEntity);
     }
 }
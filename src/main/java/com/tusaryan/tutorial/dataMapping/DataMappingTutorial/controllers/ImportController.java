@@ -0,0 +1,44 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportJobView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportJobEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.ImportService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+
+@RestController
+@RequestMapping(path = "/imports")
+public class ImportController {
+
+    private final ImportService importService;
+
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    //1. create the job, its id is known before a single row is sent (and stays known when the upload breaks off)
+    //curl -X POST "localhost:8080/imports?format=CSV"   -> 201 Created, Location: /imports/<id>
+    @PostMapping
+    public ResponseEntity<ImportJobView> createImportJob(@RequestParam(defaultValue = "CSV") ImportJobEntity.Format format) {
+        ImportJobView job = importService.createImportJob(format);
+        return ResponseEntity.created(URI.create("/imports/" + job.id())).body(job);
+    }
+
+    //2. send the rows, they are parsed in the format the job was created with.
+    //the body is taken as a raw InputStream, so spring does not read it into memory first.
+    //curl -X PUT -H "Content-Type: text/csv" --data-binary @org.csv localhost:8080/imports/<id>/rows
+    //resume an interrupted job (or retry its failed chunks) by sending the same file again
+    @PutMapping(path = "/{jobId}/rows", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportJobView importRows(@PathVariable Long jobId, InputStream body) {
+        return importService.importRows(jobId, body);
+    }
+
+    @GetMapping(path = "/{jobId}")
+    public ImportJobView getImportJob(@PathVariable Long jobId) {
+        return importService.getImportJob(jobId);
+    }
+}
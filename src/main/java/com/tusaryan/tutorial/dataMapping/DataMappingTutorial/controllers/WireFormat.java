@@ -0,0 +1,48 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import org.springframework.http.MediaType;
+
+import java.util.Comparator;
+import java.util.List;
+
+//the representations of the read endpoints (converters in WireFormatConfig). the controllers that send ETags pick the
+//format themselves, because a strong ETag belongs to one representation: the JSON and the CBOR document of the same
+//department must not share it, or a cache could answer a CBOR request with a 304 for its JSON copy.
+enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, ""),
+    CBOR(MediaType.APPLICATION_CBOR, "-cbor"),
+    SMILE(new MediaType("application", "x-jackson-smile"), "-smile");
+
+    private final MediaType mediaType;
+
+    private final String etagSuffix;
+
+    WireFormat(MediaType mediaType, String etagSuffix) {
+        this.mediaType = mediaType;
+        this.etagSuffix = etagSuffix;
+    }
+
+    MediaType mediaType() {
+        return mediaType;
+    }
+
+    String etag(String etag) {
+        return etag + etagSuffix;
+    }
+
+    //highest q value wins, JSON for "*/*" and for no Accept header at all. null when none of the formats is acceptable
+    static WireFormat negotiate(List<MediaType> accept) {
+        if (accept.isEmpty()) return JSON;
+        List<MediaType> byQuality = accept.stream()
+                .filter(mediaType -> mediaType.getQualityValue() > 0)
+                .sorted(Comparator.comparingDouble(MediaType::getQualityValue).reversed())
+                .toList();
+        for (MediaType accepted : byQuality) {
+            for (WireFormat format : values()) {
+                if (accepted.includes(format.mediaType)) return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//state of an assignment that went through the write-behind pipeline, polled with GET /assignments/{commandId}.
+//result is set once the command is COMPLETED. error says why a command is REJECTED or FAILED, for a SUPERSEDED one
+//it is the rejection of the command that won.
+public record AssignmentCommandView(String commandId, Status status, Long departmentId, Long employeeId,
+                                    MembershipAck result, String error) {
+
+    public enum Status {
+        QUEUED,
+        COMPLETED,
+        //the department or the employee does not exist, nothing was written
+        REJECTED,
+        //a later command for the same employee in the same batch won, this one was never written.
+        //result (or error) is the one of the command that won
+        SUPERSEDED,
+        FAILED
+    }
+}
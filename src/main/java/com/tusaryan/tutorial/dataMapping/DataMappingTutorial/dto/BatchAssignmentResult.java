@@ -0,0 +1,10 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import java.util.List;
+
+//per-item report of a batch assignment, so that the caller knows which of the ids it sent were actually applied.
+public record BatchAssignmentResult(Long departmentId,
+                                    List<Long> assigned,
+                                    List<Long> alreadyAssigned,
+                                    List<Long> missing) {
+}
@@ -0,0 +1,10 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//counters of one cache since startup, used to size the caches from production traffic
+public record CacheStats(String name,
+                         long size,
+                         long hitCount,
+                         long missCount,
+                         double hitRate,
+                         long evictionCount) {
+}
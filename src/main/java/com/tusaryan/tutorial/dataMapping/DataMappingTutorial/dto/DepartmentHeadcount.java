@@ -0,0 +1,5 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//size of a department without its rosters, computed with GROUP BY in the database (or taken from HeadcountCounters)
+public record DepartmentHeadcount(Long departmentId, long workers, long freelancers, boolean hasManager) {
+}
@@ -0,0 +1,10 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//department row joined with its manager in one select. the rosters are loaded separately (see DepartmentService),
+//because joining two collections in the same query would multiply the rows (workers x freelancers).
+public record DepartmentHeader(Long id, String title, Long version, long rosterVersion, Long managerId, String managerName) {
+
+    public EmployeeView manager() {
+        return managerId == null ? null : new EmployeeView(managerId, managerName);
+    }
+}
@@ -0,0 +1,5 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//the two columns the ETag of a department is made of, read without the rest of the row and without the rosters
+public record DepartmentVersions(Long version, long rosterVersion) {
+}
@@ -0,0 +1,16 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import java.util.List;
+
+//what the API returns for a department. unlike DepartmentEntity there is nothing lazy in here,
+//so Jackson can't trigger extra queries while serializing it.
+//version is the @Version of the department row and rosterVersion the one of its rosters, together they are the ETag
+//(see DepartmentService.getDepartmentETag)
+public record DepartmentView(Long id,
+                             String title,
+                             Long version,
+                             long rosterVersion,
+                             EmployeeView manager,
+                             List<EmployeeView> workers,
+                             List<EmployeeView> freelancers) {
+}
@@ -0,0 +1,5 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//a read model together with the ETag that was valid when it was read
+public record ETagged<T>(String etag, T body) {
+}
@@ -0,0 +1,14 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import java.util.List;
+
+//one page of a name search, sorted by name and id. keyset pagination like RosterPage, only the position is a (name, id) pair:
+//pass nextAfterName and nextAfterId as afterName/afterId to get the next page, both null means this was the last one.
+public record EmployeeSearchPage(List<EmployeeView> items, String nextAfterName, Long nextAfterId) {
+
+    public static EmployeeSearchPage of(List<EmployeeView> items, int pageSize) {
+        if (items.size() < pageSize) return new EmployeeSearchPage(items, null, null);
+        EmployeeView last = items.get(items.size() - 1);
+        return new EmployeeSearchPage(items, last.name(), last.id());
+    }
+}
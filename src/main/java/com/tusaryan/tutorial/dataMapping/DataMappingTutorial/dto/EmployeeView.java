@@ -0,0 +1,5 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//summary of an employee as it is shown inside rosters. filled directly by "select new ..." queries, so no entity is loaded.
+public record EmployeeView(Long id, String name) {
+}
@@ -0,0 +1,16 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import java.util.List;
+
+public record ImportJobView(Long id,
+                           String format,
+                           String status,
+                           long processedRows,
+                           long failedRows,
+                           int committedChunks,
+                           int failedChunks,
+                           List<ChunkError> errors) {
+
+    public record ChunkError(int chunkIndex, long firstRow, long lastRow, String message) {
+    }
+}
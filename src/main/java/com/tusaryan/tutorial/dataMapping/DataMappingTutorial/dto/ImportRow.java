@@ -0,0 +1,17 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+//one row of a bulk import. type decides which fields are used:
+// department -> ref, name (the title)      e.g. department,d1,HR            {"type":"department","ref":"d1","name":"HR"}
+// employee   -> ref, name                  e.g. employee,e1,Aryan           {"type":"employee","ref":"e1","name":"Aryan"}
+// manager | worker | freelancer -> department, employee (both refs of this import)
+//                                          e.g. worker,d1,e1               {"type":"worker","department":"d1","employee":"e1"}
+//error is set by the reader for a line it could not parse, that chunk then fails with this message.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ImportRow(String type, String ref, String name, String department, String employee, String error) {
+
+    public static ImportRow invalid(String error) {
+        return new ImportRow(null, null, null, null, null, error);
+    }
+}
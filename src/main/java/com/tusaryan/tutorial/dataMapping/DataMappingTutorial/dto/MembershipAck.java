@@ -0,0 +1,11 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+//lightweight answer of a membership add/remove, instead of sending back the whole department with all its workers/freelancers.
+//changed = false means the row was already there (add) or was not there (remove).
+public record MembershipAck(Long departmentId, Long employeeId, Role role, boolean changed) {
+
+    public enum Role {
+        WORKER,
+        FREELANCER
+    }
+}
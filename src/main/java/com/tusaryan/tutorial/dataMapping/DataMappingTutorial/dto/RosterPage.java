@@ -0,0 +1,13 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto;
+
+import java.util.List;
+
+//one page of a roster. keyset (seek) pagination -> pass nextAfterId as afterId to get the next page, null means this was the last one.
+//unlike offset pagination the database never has to skip over the rows of the earlier pages.
+public record RosterPage(List<EmployeeView> items, Long nextAfterId) {
+
+    public static RosterPage of(List<EmployeeView> items, int pageSize) {
+        Long nextAfterId = items.size() < pageSize ? null : items.get(items.size() - 1).id();
+        return new RosterPage(items, nextAfterId);
+    }
+}
@@ -17,12 +17,26 @@ import java.util.Set;
 public class DepartmentEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+//    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //pooled sequence instead of IDENTITY so that inserts can be batched, same as EmployeeEntity
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "department_seq")
+    @SequenceGenerator(name = "department_seq", sequenceName = "department_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String title;
 
+    //optimistic locking, same as EmployeeEntity. only changes of the department row itself (title, manager) increment it,
+    //workers/freelancers are mapped by the employee side so membership changes don't touch it.
+    @Version
+    private Long version;
+
+    //the counterpart of version for the rosters: incremented in every transaction that changes the workers or freelancers
+    //(DepartmentRepository.incrementRosterVersions). version + rosterVersion are the ETag of GET /departments/{id}.
+    //hibernate inserts it as 0 and never updates it, so saving a department can't set it back.
+    @Column(name = "roster_version", nullable = false, updatable = false)
+    private long rosterVersion;
+
     //FetchType.EAGER -> means it will get data of manager as soon as it is getting the data of department.
     //this department has OneToOne mapping with this manager.
     //this is a foreign key (i.e. manager id) inside department entity
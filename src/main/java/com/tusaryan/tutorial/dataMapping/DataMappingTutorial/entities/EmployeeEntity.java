@@ -15,17 +15,29 @@ import java.util.Set;
 @NoArgsConstructor
 //Builder will allow to create object of employee entity with the help of builder pattern. used to optimise two api calls in department service
 @Builder
-@Table(name = "employees")
+//the indexes are created by the migrations (db/migration), they are repeated here so the mapping shows them.
+//(name, id) serves the name search: prefix range scan and its "order by name, id" come straight from the index
+@Table(name = "employees", indexes = @Index(name = "idx_employees_name", columnList = "name, id"))
 public class EmployeeEntity {
 
     @Id
 //    @GeneratedValue(strategy = GenerationType.AUTO)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+//    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //IDENTITY needs the insert to run before hibernate knows the id, so it can't group inserts into JDBC batches.
+    //with a pooled sequence hibernate reserves 50 ids per round trip and the inserts can be batched (hibernate.jdbc.batch_size).
+    //MySQL has no sequences, hibernate emulates it with a one row "employee_seq" table.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "employee_seq")
+    @SequenceGenerator(name = "employee_seq", sequenceName = "employee_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String name;
 
+    //optimistic locking -> every update checks and increments it ("where id = ? and version = ?"),
+    //so two transactions that changed the same employee can't both commit. see RetryingTransaction
+    @Version
+    private Long version;
+
 
     //now this is bidirectional mapping. we are mapping it one-to-one with the manager mapping defined inside the department entity. Now this will utilize the prev mapping.
     //due to this department entity will not create another column of manager inside employee entity
@@ -48,13 +60,23 @@ public class EmployeeEntity {
     //eg: if we try to remove an employee from department/employee Entity than that effect should also take place inside Department Entity as well.
     //Since this is a Many-to-One mapping. So, any changes in Employee Entity that change will automatically reflect inside Department Entity. Because our Department Entity is actually not aware of workerDepartment id.
     //CascadeType.PERSIST -> will take effect when we try to save something. CascadeType.REFRESH -> when we PUT/update something.
-    @ManyToOne(cascade = CascadeType.ALL)
+    //no cascade anymore: with CascadeType.ALL every worker assignment also merged (and locked) the department row,
+    //so all assignments to a department fought over that one row. the department has to exist already anyway.
+//    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne
 //    @JoinColumn(name = "worker_department_id", referencedColumnName = "id")
 //    @JoinColumn(name = "worker_department_id")
 
     // if we don't want to store information about the department inside our employee table in that case we use @JoinTable.
     //creating new table for this mapping/to store the data, now employee repo will no longer have the above-mentioned "worker_department_id" column. Can also define joinColumns and inverseJoinColumns inside it.
-    @JoinTable(name = "worker_department_mapping")
+    //column names are given explicitly because DepartmentService writes this table directly (append-only membership writes).
+    //employee_id is the primary key of this table, as an employee can be a worker of only one department.
+    //(department_id, employee_id) -> the roster of a department and the department filter of the name search, in employee id order
+    @JoinTable(name = "worker_department_mapping",
+            joinColumns = @JoinColumn(name = "employee_id"),
+            inverseJoinColumns = @JoinColumn(name = "department_id"),
+            indexes = @Index(name = "idx_worker_mapping_department", columnList = "department_id, employee_id")
+    )
     //Either of the bidirectional mapping has to have a @JsonIgnore to fix recursive calls. Also, we will not find that field (here "workerDepartment") in that entity DB where we define @JsonIgnore.
     @JsonIgnore
     private DepartmentEntity workerDepartment;
@@ -74,7 +96,9 @@ public class EmployeeEntity {
             //joinColumns -> by default created by id/ can change name of join column.
             joinColumns = @JoinColumn(name = "employee_id"),
             //the other one/ other entity
-            inverseJoinColumns = @JoinColumn(name = "department_id")
+            inverseJoinColumns = @JoinColumn(name = "department_id"),
+            //the primary key starts with employee_id, lookups by department need their own index
+            indexes = @Index(name = "idx_freelancer_mapping_department", columnList = "department_id, employee_id")
     )
     //to avoid recursion mapping
     @JsonIgnore
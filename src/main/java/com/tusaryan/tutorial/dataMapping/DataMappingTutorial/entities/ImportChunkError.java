@@ -0,0 +1,24 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//a chunk that was rolled back, rows are numbered from 1 in the order of the import body
+@Embeddable
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportChunkError {
+
+    private int chunkIndex;
+
+    private long firstRow;
+
+    private long lastRow;
+
+    @Column(length = 1000)
+    private String message;
+}
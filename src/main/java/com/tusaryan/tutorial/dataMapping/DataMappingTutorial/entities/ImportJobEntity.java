@@ -0,0 +1,66 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//progress of one bulk import. the counters are updated in the same transaction as the chunk they count,
+//so after a crash processedRows + failedRows tells exactly from which row the import can be resumed.
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "import_jobs")
+public class ImportJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "import_job_seq")
+    @SequenceGenerator(name = "import_job_seq", sequenceName = "import_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Format format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    //rows of committed chunks
+    private long processedRows;
+
+    //rows of chunks that were rolled back, a resumed import tries these chunks again and skips the committed ones
+    private long failedRows;
+
+    private int committedChunks;
+
+    private int failedChunks;
+
+    //one per failed chunk, a chunk that is imported on a retry is removed again
+    @ElementCollection
+    @OrderBy("firstRow")
+    @CollectionTable(name = "import_job_errors", joinColumns = @JoinColumn(name = "import_job_id"))
+    private List<ImportChunkError> errors = new ArrayList<>();
+
+    public ImportJobEntity(Format format) {
+        this.format = format;
+        this.status = Status.CREATED;
+    }
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    //CREATED until its rows are sent. RUNNING is also what a job crashed in the middle of looks like, both can be resumed
+    public enum Status {
+        CREATED,
+        RUNNING,
+        COMPLETED,
+        INTERRUPTED
+    }
+}
@@ -0,0 +1,32 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//rows of an import refer to each other by "ref" (the key of the row in the HR export), e.g. a worker row says
+//"department d7, employee e42". the ids generated for those refs are kept here and not in memory,
+//so an import of millions of rows needs constant memory and a resumed import still knows the refs of earlier chunks.
+@Entity
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "import_refs")
+public class ImportRefEntity {
+
+    @EmbeddedId
+    private ImportRefId id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    public enum Kind {
+        DEPARTMENT,
+        EMPLOYEE
+    }
+}
@@ -0,0 +1,21 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ImportRefId implements Serializable {
+
+    private Long jobId;
+
+    private String ref;
+}
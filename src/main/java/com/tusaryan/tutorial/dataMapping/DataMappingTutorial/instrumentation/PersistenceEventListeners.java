@@ -0,0 +1,32 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.stereotype.Component;
+
+//counts loaded entities and initialized (lazy) collections per request. the listeners are appended,
+//hibernate's own listeners still do the actual loading.
+@Component
+public class PersistenceEventListeners {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public PersistenceEventListeners(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> RequestPersistenceStats.entityLoaded());
+        registry.appendListeners(EventType.INIT_COLLECTION,
+                (InitializeCollectionEventListener) event -> RequestPersistenceStats.collectionInitialized());
+    }
+}
@@ -0,0 +1,122 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//records per endpoint (uri pattern + method):
+// persistence.request                        -> latency histogram
+// persistence.request.statements             -> SQL statements per request
+// persistence.request.entities.loaded        -> entities hydrated per request
+// persistence.request.collections.initialized -> lazy collections initialized per request
+// persistence.request.flagged                -> requests over the query budget (reason=budget) or with an N+1 pattern (reason=repeated_statement)
+//all of it is scraped from /actuator/prometheus. flagged requests are logged, sampled so a hot endpoint can't flood the log.
+//a streaming (NDJSON) endpoint does its reads on a task executor thread, the stats of the request go along as a
+//CallableProcessingInterceptor and the whole request is recorded when its async dispatch completes.
+@Component
+public class PersistenceMetricsInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceMetricsInterceptor.class);
+
+    private static final String STARTED_AT = PersistenceMetricsInterceptor.class.getName() + ".startedAt";
+
+    private static final String STATS = PersistenceMetricsInterceptor.class.getName() + ".stats";
+
+    private final MeterRegistry meterRegistry;
+
+    private final int queryBudget;
+
+    private final int repeatedStatementThreshold;
+
+    private final double logSampleRate;
+
+    public PersistenceMetricsInterceptor(MeterRegistry meterRegistry,
+                                         @Value("${app.persistence-metrics.query-budget:20}") int queryBudget,
+                                         @Value("${app.persistence-metrics.repeated-statement-threshold:5}") int repeatedStatementThreshold,
+                                         @Value("${app.persistence-metrics.log-sample-rate:0.1}") double logSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.queryBudget = queryBudget;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+        this.logSampleRate = logSampleRate;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //the dispatch that completes an async request goes on with the stats and the start time of the first one
+        if (request.getDispatcherType() == DispatcherType.ASYNC && request.getAttribute(STATS) instanceof RequestPersistenceStats stats) {
+            RequestPersistenceStats.bind(stats);
+            return true;
+        }
+        request.setAttribute(STARTED_AT, System.nanoTime());
+        request.setAttribute(STATS, RequestPersistenceStats.start());
+        return true;
+    }
+
+    //streaming endpoints continue on another thread, the stats stay with the request and are unbound from this thread
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        RequestPersistenceStats.finish();
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        if (request.getAttribute(STATS, RequestAttributes.SCOPE_REQUEST) instanceof RequestPersistenceStats stats) {
+            RequestPersistenceStats.bind(stats);
+        }
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        RequestPersistenceStats.finish();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestPersistenceStats stats = RequestPersistenceStats.finish();
+        Object startedAt = request.getAttribute(STARTED_AT);
+        if (stats == null || startedAt == null) return;
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("uri", pattern == null ? "UNKNOWN" : pattern.toString(), "method", request.getMethod());
+
+        long elapsedNanos = System.nanoTime() - (Long) startedAt;
+        Timer.builder("persistence.request").tags(tags).publishPercentileHistogram().register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("persistence.request.statements").tags(tags).register(meterRegistry).record(stats.getStatements());
+        DistributionSummary.builder("persistence.request.entities.loaded").tags(tags).register(meterRegistry).record(stats.getEntitiesLoaded());
+        DistributionSummary.builder("persistence.request.collections.initialized").tags(tags).register(meterRegistry)
+                .record(stats.getCollectionsInitialized());
+
+        Map.Entry<String, Integer> mostRepeated = stats.getMostRepeatedStatement();
+        boolean overBudget = stats.getStatements() > queryBudget;
+        boolean repeatedStatement = mostRepeated != null && mostRepeated.getValue() >= repeatedStatementThreshold;
+        if (overBudget) Counter.builder("persistence.request.flagged").tags(tags).tag("reason", "budget").register(meterRegistry).increment();
+        if (repeatedStatement) Counter.builder("persistence.request.flagged").tags(tags).tag("reason", "repeated_statement").register(meterRegistry).increment();
+
+        if ((overBudget || repeatedStatement) && ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+            log.warn("{} {} ran {} statements in {} ms (budget {}), {} entities loaded, {} collections initialized, most repeated statement x{}: {}",
+                    request.getMethod(), pattern, stats.getStatements(), elapsedNanos / 1_000_000, queryBudget,
+                    stats.getEntitiesLoaded(), stats.getCollectionsInitialized(),
+                    mostRepeated.getValue(), mostRepeated.getKey());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//what the persistence layer did for the current request. bound to the request thread (and to the thread the async part
+//of a request runs on) by PersistenceMetricsInterceptor, filled by the statement inspector, StatementCountingJdbcTemplate
+//and the hibernate event listeners. outside of a request nothing is recorded.
+public final class RequestPersistenceStats {
+
+    private static final ThreadLocal<RequestPersistenceStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+
+    private int entitiesLoaded;
+
+    private int collectionsInitialized;
+
+    //hibernate sends the same SQL text (with ? parameters) for every execution of a query,
+    //the same text showing up many times in one request is the N+1 pattern
+    private final Map<String, Integer> statementCounts = new HashMap<>();
+
+    private RequestPersistenceStats() {
+    }
+
+    static RequestPersistenceStats start() {
+        RequestPersistenceStats stats = new RequestPersistenceStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    //the same request going on on another thread
+    static void bind(RequestPersistenceStats stats) {
+        CURRENT.set(stats);
+    }
+
+    static RequestPersistenceStats finish() {
+        RequestPersistenceStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    static void statementPrepared(String sql) {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats == null) return;
+        stats.statements++;
+        stats.statementCounts.merge(sql, 1, Integer::sum);
+    }
+
+    //the SQL text isn't known where JdbcTemplate statements are counted, they only count towards the total
+    static void jdbcTemplateStatementPrepared() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) stats.statements++;
+    }
+
+    static void entityLoaded() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) stats.entitiesLoaded++;
+    }
+
+    static void collectionInitialized() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) stats.collectionsInitialized++;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public int getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    public int getCollectionsInitialized() {
+        return collectionsInitialized;
+    }
+
+    public Map.Entry<String, Integer> getMostRepeatedStatement() {
+        return statementCounts.entrySet().stream().max(Map.Entry.comparingByValue()).orElse(null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//hibernate calls this for every SQL statement it prepares, we only count and never change the SQL
+public class StatementCountingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestPersistenceStats.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//JdbcTemplate statements (e.g. the relationship batches of an import) don't go through hibernate, so the StatementInspector
+//never sees them. spring calls applyStatementSettings for every statement it creates, they are counted there.
+//a JDBC batch is one statement, like a hibernate batch.
+public class StatementCountingJdbcTemplate extends JdbcTemplate {
+
+    public StatementCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        RequestPersistenceStats.jdbcTemplateStatementPrepared();
+    }
+}
@@ -1,14 +1,88 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories;
 
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentVersions;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface DepartmentRepository extends JpaRepository<DepartmentEntity, Long> {
 
     //auto generate method using hibernate
     //this is a valid query method because we have manager field inside our department Entity
     DepartmentEntity findByManager(EmployeeEntity employeeEntity);
+
+    //read model -> department + manager in one select, without loading any entity
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader(d.id, d.title, d.version, d.rosterVersion, m.id, m.name) " +
+            "from DepartmentEntity d left join d.manager m where d.id = :departmentId")
+    Optional<DepartmentHeader> findHeaderById(@Param("departmentId") Long departmentId);
+
+    //same as findByManager, but only needs the employee id and returns the read model
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader(d.id, d.title, d.version, d.rosterVersion, m.id, m.name) " +
+            "from DepartmentEntity d join d.manager m where m.id = :employeeId")
+    Optional<DepartmentHeader> findHeaderByManagerId(@Param("employeeId") Long employeeId);
+
+    //enough to answer a conditional GET, see DepartmentService.getDepartmentETag
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentVersions(d.version, d.rosterVersion) " +
+            "from DepartmentEntity d where d.id = :departmentId")
+    DepartmentVersions findVersionsById(@Param("departmentId") Long departmentId);
+
+    //last statement of every membership change: the rosters of these departments changed (DepartmentEntity.rosterVersion).
+    //it write locks the department rows, after the employee rows (lockForMembershipChange) and in index order like those
+    @Modifying
+    @Query(value = "update departments set roster_version = roster_version + 1 where id in (:departmentIds)", nativeQuery = true)
+    int incrementRosterVersions(@Param("departmentIds") Collection<Long> departmentIds);
+
+    //every department with its manager in id order, for the warm start snapshot (OrgSnapshotService)
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader(d.id, d.title, d.version, d.rosterVersion, m.id, m.name) " +
+            "from DepartmentEntity d left join d.manager m order by d.id")
+    Stream<DepartmentHeader> streamAllHeaders();
+
+    @Query("select d.id from DepartmentEntity d where d.id in :departmentIds")
+    List<Long> findExistingIds(@Param("departmentIds") Collection<Long> departmentIds);
+
+    //headcounts straight from the join tables, one GROUP BY per table joined to departments.
+    //no EmployeeEntity gets loaded, the rosters never leave the database.
+    String HEADCOUNT_QUERY = "select d.id as departmentId, d.department_manager as managerId, " +
+            "coalesce(w.workers, 0) as workers, coalesce(f.freelancers, 0) as freelancers " +
+            "from departments d " +
+            "left join (select department_id, count(*) as workers from worker_department_mapping group by department_id) w " +
+            "on w.department_id = d.id " +
+            "left join (select department_id, count(*) as freelancers from freelancer_department_mapping group by department_id) f " +
+            "on f.department_id = d.id ";
+
+    @Query(value = HEADCOUNT_QUERY + "order by d.id", nativeQuery = true)
+    List<HeadcountRow> findAllHeadcounts();
+
+    //same for a single department, the derived tables are filtered first so only its mapping rows get counted
+    @Query(value = "select d.id as departmentId, d.department_manager as managerId, " +
+            "coalesce(w.workers, 0) as workers, coalesce(f.freelancers, 0) as freelancers " +
+            "from departments d " +
+            "left join (select department_id, count(*) as workers from worker_department_mapping " +
+            "where department_id = :departmentId group by department_id) w on w.department_id = d.id " +
+            "left join (select department_id, count(*) as freelancers from freelancer_department_mapping " +
+            "where department_id = :departmentId group by department_id) f on f.department_id = d.id " +
+            "where d.id = :departmentId", nativeQuery = true)
+    Optional<HeadcountRow> findHeadcountById(@Param("departmentId") Long departmentId);
+
+    //native queries can't create records, spring data maps the columns onto this interface by alias
+    interface HeadcountRow {
+        Long getDepartmentId();
+
+        Long getManagerId();
+
+        Long getWorkers();
+
+        Long getFreelancers();
+    }
 }
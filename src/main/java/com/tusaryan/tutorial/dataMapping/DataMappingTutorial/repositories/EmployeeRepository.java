@@ -1,10 +1,188 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories;
 
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface EmployeeRepository extends JpaRepository<EmployeeEntity, Long> {
 
+    //findById would also load managedDepartment and workerDepartment (both eager), the view only needs the employee row
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e where e.id = :employeeId")
+    Optional<EmployeeView> findViewById(@Param("employeeId") Long employeeId);
+
+    //loads the whole batch with one IN query. the department side of every mapping is fetch joined,
+    //otherwise checking/adding a membership would lazy load it again for every single employee (N+1).
+    @Query("select distinct e from EmployeeEntity e " +
+            "left join fetch e.managedDepartment " +
+            "left join fetch e.workerDepartment " +
+            "left join fetch e.freelanceDepartments " +
+            "where e.id in :ids")
+    List<EmployeeEntity> findAllWithDepartmentsByIdIn(@Param("ids") Collection<Long> ids);
+
+    //membership rows are written directly into the join tables. going through employee.getFreelanceDepartments().add(..)
+    //would first load every existing row of the collection, so the cost of adding one member grew with the department size.
+    //these are single row statements, so the cost stays the same for a department with 10 or 100k members.
+
+    //first statement of every membership change: takes the write lock on the employee row and increments its version,
+    //so concurrent changes of the same employee run one after the other and a concurrent batch assignment
+    //(which went through the entity and its version) fails its version check and is retried.
+    //returns 0 when there is no such employee. the department row is only locked at the end, by its roster_version increment.
+    @Modifying
+    @Query("update EmployeeEntity e set e.version = e.version + 1 where e.id = :employeeId")
+    int lockForMembershipChange(@Param("employeeId") Long employeeId);
+
+    //same for a whole batch of employees (AssignmentPipeline). a single statement, the database locks the rows in index order
+    @Modifying
+    @Query("update EmployeeEntity e set e.version = e.version + 1 where e.id in :employeeIds")
+    int lockForMembershipChange(@Param("employeeIds") Collection<Long> employeeIds);
+
+    @Query("select e.id from EmployeeEntity e where e.id in :employeeIds")
+    List<Long> findExistingIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from worker_department_mapping " +
+            "where employee_id in (:employeeIds)", nativeQuery = true)
+    List<MembershipRow> findWorkerMemberships(@Param("employeeIds") Collection<Long> employeeIds);
+
+    @Query(value = "select department_id from worker_department_mapping where employee_id = :employeeId", nativeQuery = true)
+    Long findWorkerDepartmentId(@Param("employeeId") Long employeeId);
+
+    @Modifying
+    @Query(value = "insert into worker_department_mapping (employee_id, department_id) values (:employeeId, :departmentId)", nativeQuery = true)
+    int insertWorkerMapping(@Param("employeeId") Long employeeId, @Param("departmentId") Long departmentId);
+
+    @Modifying
+    @Query(value = "delete from worker_department_mapping where employee_id = :employeeId", nativeQuery = true)
+    int deleteWorkerMapping(@Param("employeeId") Long employeeId);
+
+    @Modifying
+    @Query(value = "delete from worker_department_mapping where employee_id = :employeeId and department_id = :departmentId", nativeQuery = true)
+    int deleteWorkerMapping(@Param("employeeId") Long employeeId, @Param("departmentId") Long departmentId);
+
+    @Query(value = "select count(*) from freelancer_department_mapping where employee_id = :employeeId and department_id = :departmentId", nativeQuery = true)
+    long countFreelancerMapping(@Param("employeeId") Long employeeId, @Param("departmentId") Long departmentId);
+
+    @Modifying
+    @Query(value = "insert into freelancer_department_mapping (employee_id, department_id) values (:employeeId, :departmentId)", nativeQuery = true)
+    int insertFreelancerMapping(@Param("employeeId") Long employeeId, @Param("departmentId") Long departmentId);
+
+    @Modifying
+    @Query(value = "delete from freelancer_department_mapping where employee_id = :employeeId and department_id = :departmentId", nativeQuery = true)
+    int deleteFreelancerMapping(@Param("employeeId") Long employeeId, @Param("departmentId") Long departmentId);
+
+    //roster queries -> keyset pagination on the employee id. "e.id > :afterId order by e.id" is an index range scan,
+    //the Pageable is only used for the limit (no count query because we return a List and not a Page).
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e where e.workerDepartment.id = :departmentId and e.id > :afterId order by e.id")
+    List<EmployeeView> findWorkerPage(@Param("departmentId") Long departmentId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e join e.freelanceDepartments d where d.id = :departmentId and e.id > :afterId order by e.id")
+    List<EmployeeView> findFreelancerPage(@Param("departmentId") Long departmentId, @Param("afterId") Long afterId, Pageable pageable);
+
+    //streaming versions for exports. the rows are projections and not entities, so nothing piles up in the persistence context,
+    //and with a fetch size (useCursorFetch=true on MySQL) the driver does not read the whole result set into memory either.
+    //the caller has to consume the stream inside a transaction and close it.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e where e.workerDepartment.id = :departmentId order by e.id")
+    Stream<EmployeeView> streamWorkers(@Param("departmentId") Long departmentId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e join e.freelanceDepartments d where d.id = :departmentId order by e.id")
+    Stream<EmployeeView> streamFreelancers(@Param("departmentId") Long departmentId);
+
+    //name search (GET /employees/search) -> "name like 'abc%'" is a range scan of the (name, id) index, and the keyset
+    //condition continues right after the last row of the previous page in the same index order.
+    //the pattern is escaped by EmployeeService ('!' is the escape character, a backslash would need escaping in MySQL itself)
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e where e.name like :pattern escape '!' " +
+            "and (e.name > :afterName or (e.name = :afterName and e.id > :afterId)) order by e.name, e.id")
+    List<EmployeeView> searchByName(@Param("pattern") String pattern, @Param("afterName") String afterName,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    //with a department filter the members come from the (department_id, employee_id) index of the join table and are
+    //sorted by name afterwards, so the cost grows with the size of that department and not with all employees
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e where e.workerDepartment.id = :departmentId and e.name like :pattern escape '!' " +
+            "and (e.name > :afterName or (e.name = :afterName and e.id > :afterId)) order by e.name, e.id")
+    List<EmployeeView> searchWorkersByName(@Param("departmentId") Long departmentId, @Param("pattern") String pattern,
+                                           @Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) " +
+            "from EmployeeEntity e join e.freelanceDepartments d where d.id = :departmentId and e.name like :pattern escape '!' " +
+            "and (e.name > :afterName or (e.name = :afterName and e.id > :afterId)) order by e.name, e.id")
+    List<EmployeeView> searchFreelancersByName(@Param("departmentId") Long departmentId, @Param("pattern") String pattern,
+                                               @Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
+
+    //everything, for loading EmployeeNameIndex. same streaming rules as streamWorkers
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView(e.id, e.name) from EmployeeEntity e")
+    Stream<EmployeeView> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from worker_department_mapping", nativeQuery = true)
+    Stream<MembershipRow> streamWorkerMemberships();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from freelancer_department_mapping", nativeQuery = true)
+    Stream<MembershipRow> streamFreelancerMemberships();
+
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from freelancer_department_mapping " +
+            "where employee_id in (:employeeIds)", nativeQuery = true)
+    List<MembershipRow> findFreelancerMemberships(@Param("employeeIds") Collection<Long> employeeIds);
+
+    //warm start snapshot (OrgSnapshotService): everything in id order, and only id + version to reconcile it later
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select id, name, version from employees order by id", nativeQuery = true)
+    Stream<EmployeeRow> streamAllRows();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select id, version from employees", nativeQuery = true)
+    Stream<VersionRow> streamVersions();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from worker_department_mapping " +
+            "order by department_id, employee_id", nativeQuery = true)
+    Stream<MembershipRow> streamWorkerMembershipsByDepartment();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "select employee_id as employeeId, department_id as departmentId from freelancer_department_mapping " +
+            "order by department_id, employee_id", nativeQuery = true)
+    Stream<MembershipRow> streamFreelancerMembershipsByDepartment();
+
+    interface EmployeeRow {
+        Long getId();
+
+        String getName();
+
+        Long getVersion();
+    }
+
+    interface VersionRow {
+        Long getId();
+
+        Long getVersion();
+    }
+
+    interface MembershipRow {
+        Long getEmployeeId();
+
+        Long getDepartmentId();
+    }
 }
@@ -0,0 +1,18 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJobEntity, Long> {
+
+    //runs inside the transaction of the chunk, the chunk and its progress are committed together
+    @Modifying
+    @Query("update ImportJobEntity j set j.processedRows = j.processedRows + :rows, j.committedChunks = j.committedChunks + 1 " +
+            "where j.id = :jobId")
+    int recordCommittedChunk(@Param("jobId") Long jobId, @Param("rows") long rows);
+}
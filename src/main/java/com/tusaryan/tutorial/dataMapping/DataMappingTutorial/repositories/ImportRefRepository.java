@@ -0,0 +1,19 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportRefEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportRefId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportRefRepository extends JpaRepository<ImportRefEntity, ImportRefId> {
+
+    //one IN query per chunk for all the refs that were created by earlier chunks
+    @Query("select r from ImportRefEntity r where r.id.jobId = :jobId and r.id.ref in :refs")
+    List<ImportRefEntity> findByJobIdAndRefIn(@Param("jobId") Long jobId, @Param("refs") Collection<String> refs);
+}
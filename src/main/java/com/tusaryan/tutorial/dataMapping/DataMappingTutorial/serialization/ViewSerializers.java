@@ -0,0 +1,127 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.RosterPage;
+
+import java.io.IOException;
+import java.util.List;
+
+//hand written serializers for the read models that carry whole rosters. instead of jackson's reflection based bean
+//serializer (property lookup + a serializer lookup for every element of the rosters) they write the fields straight
+//to the JsonGenerator, in the same order and with the same names as before, so the JSON doesn't change.
+//the generator decides the format, the same serializers write JSON, CBOR and Smile (see WireFormatConfig).
+//note: they ignore ObjectMapper settings like spring.jackson.default-property-inclusion or a naming strategy,
+//nulls are always written, like with the default settings. a new field in one of the records has to be added here too.
+public class ViewSerializers extends SimpleModule {
+
+    //field names encoded once, not on every write
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString TITLE = new SerializedString("title");
+    private static final SerializableString VERSION = new SerializedString("version");
+    private static final SerializableString ROSTER_VERSION = new SerializedString("rosterVersion");
+    private static final SerializableString MANAGER = new SerializedString("manager");
+    private static final SerializableString WORKERS = new SerializedString("workers");
+    private static final SerializableString FREELANCERS = new SerializedString("freelancers");
+    private static final SerializableString ITEMS = new SerializedString("items");
+    private static final SerializableString NEXT_AFTER_ID = new SerializedString("nextAfterId");
+
+    public ViewSerializers() {
+        super("ViewSerializers");
+        addSerializer(EmployeeView.class, new EmployeeViewSerializer());
+        addSerializer(DepartmentView.class, new DepartmentViewSerializer());
+        addSerializer(RosterPage.class, new RosterPageSerializer());
+    }
+
+    static final class EmployeeViewSerializer extends StdSerializer<EmployeeView> {
+
+        EmployeeViewSerializer() {
+            super(EmployeeView.class);
+        }
+
+        @Override
+        public void serialize(EmployeeView employee, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            writeEmployee(generator, employee);
+        }
+    }
+
+    static final class DepartmentViewSerializer extends StdSerializer<DepartmentView> {
+
+        DepartmentViewSerializer() {
+            super(DepartmentView.class);
+        }
+
+        @Override
+        public void serialize(DepartmentView department, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(department);
+            generator.writeFieldName(ID);
+            writeNumber(generator, department.id());
+            generator.writeFieldName(TITLE);
+            generator.writeString(department.title());
+            generator.writeFieldName(VERSION);
+            writeNumber(generator, department.version());
+            generator.writeFieldName(ROSTER_VERSION);
+            generator.writeNumber(department.rosterVersion());
+            generator.writeFieldName(MANAGER);
+            writeEmployee(generator, department.manager());
+            generator.writeFieldName(WORKERS);
+            writeEmployees(generator, department.workers());
+            generator.writeFieldName(FREELANCERS);
+            writeEmployees(generator, department.freelancers());
+            generator.writeEndObject();
+        }
+    }
+
+    static final class RosterPageSerializer extends StdSerializer<RosterPage> {
+
+        RosterPageSerializer() {
+            super(RosterPage.class);
+        }
+
+        @Override
+        public void serialize(RosterPage page, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(page);
+            generator.writeFieldName(ITEMS);
+            writeEmployees(generator, page.items());
+            generator.writeFieldName(NEXT_AFTER_ID);
+            writeNumber(generator, page.nextAfterId());
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeEmployee(JsonGenerator generator, EmployeeView employee) throws IOException {
+        if (employee == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject(employee);
+        generator.writeFieldName(ID);
+        writeNumber(generator, employee.id());
+        generator.writeFieldName(NAME);
+        generator.writeString(employee.name());
+        generator.writeEndObject();
+    }
+
+    //the size up front lets CBOR write a definite length array instead of an "indefinite" one with an end marker
+    private static void writeEmployees(JsonGenerator generator, List<EmployeeView> employees) throws IOException {
+        if (employees == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray(employees, employees.size());
+        for (EmployeeView employee : employees) writeEmployee(generator, employee);
+        generator.writeEndArray();
+    }
+
+    private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+        if (value == null) generator.writeNull();
+        else generator.writeNumber(value.longValue());
+    }
+}
@@ -0,0 +1,245 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.AssignmentCommandView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+//write-behind group commit for worker assignments (opt-in, app.assignment-pipeline.enabled).
+//every PUT /departments/{id}/worker/{employeeId} used to be its own transaction (and its own fsync on commit).
+//with the pipeline the requests only put a command into a bounded queue, one writer thread takes the commands out
+//in micro-batches (max-batch-size commands or batch-window, whatever comes first) and commits a whole batch in one transaction:
+// - last writer wins: when the same employee is reassigned several times in one batch only the last command is written,
+//   the earlier ones end as SUPERSEDED with the result of the last one (or its rejection, or FAILED with its error)
+// - the membership rows are written as JDBC batches, the department rows only get a new roster_version with one statement
+//   (WorkerAssignmentWriter, the same code as PUT /departments/{id}/workers)
+// - a batch that can't be committed is applied command by command, so one bad command doesn't fail the others
+// - full queue -> the caller waits up to enqueue-timeout, then gets AssignmentQueueFullException (503)
+//callers get a future (in-process) or poll the command by its id (GET /assignments/{commandId}), statuses are kept for command-retention.
+@Component
+public class AssignmentPipeline implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AssignmentPipeline.class);
+
+    private final DepartmentService departmentService;
+
+    private final WorkerAssignmentWriter workerAssignmentWriter;
+
+    private final RetryingTransaction retryingTransaction;
+
+    private final boolean enabled;
+
+    private final BlockingQueue<Command> queue;
+
+    private final int maxBatchSize;
+
+    private final long batchWindowNanos;
+
+    private final long enqueueTimeoutNanos;
+
+    private final Cache<String, AssignmentCommandView> commands;
+
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public AssignmentPipeline(DepartmentService departmentService,
+                              WorkerAssignmentWriter workerAssignmentWriter,
+                              RetryingTransaction retryingTransaction,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.assignment-pipeline.enabled:false}") boolean enabled,
+                              @Value("${app.assignment-pipeline.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.assignment-pipeline.max-batch-size:500}") int maxBatchSize,
+                              @Value("${app.assignment-pipeline.batch-window:10ms}") Duration batchWindow,
+                              @Value("${app.assignment-pipeline.enqueue-timeout:100ms}") Duration enqueueTimeout,
+                              @Value("${app.assignment-pipeline.command-retention:10m}") Duration commandRetention) {
+        this.departmentService = departmentService;
+        this.workerAssignmentWriter = workerAssignmentWriter;
+        this.retryingTransaction = retryingTransaction;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.commands = Caffeine.newBuilder()
+                .maximumSize(queueCapacity * 10L)
+                .expireAfterWrite(commandRetention)
+                .build();
+        Gauge.builder("assignment.pipeline.queue.size", queue, Collection::size).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("assignment.pipeline.batch.size").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Submission submitWorkerAssignment(Long departmentId, Long employeeId) {
+        if (!running) throw new IllegalStateException("Assignment pipeline is not running");
+
+        Command command = new Command(UUID.randomUUID().toString(), departmentId, employeeId, new CompletableFuture<>());
+        commands.put(command.id(), command.view(AssignmentCommandView.Status.QUEUED, null, null));
+        boolean queued;
+        try {
+            queued = queue.offer(command, enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            commands.invalidate(command.id());
+            throw new AssignmentQueueFullException(queue.size());
+        }
+        return new Submission(command.id(), command.result());
+    }
+
+    public AssignmentCommandView getCommand(String commandId) {
+        return commands.getIfPresent(commandId);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        writer = Thread.ofPlatform().name("assignment-writer").start(this::drain);
+    }
+
+    //no new commands are taken, the writer commits what is queued already and ends
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) return;
+        try {
+            writer.join(Duration.ofSeconds(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //started before and stopped after the web server, so no request finds the pipeline stopped
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize) {
+                    //take whatever is queued already, wait only when the queue is empty
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Command next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                batchSizes.record(batch.size());
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(command -> fail(command, e));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Assignment batch of {} commands failed", batch.size(), e);
+                batch.forEach(command -> fail(command, e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Command> batch) {
+        //last writer wins, a later command for the same employee replaces the earlier ones. the earlier ones are completed
+        //with the outcome of the one that is written, that is where the employee ends up
+        Map<Long, Command> latest = new LinkedHashMap<>();
+        Map<Long, List<Command>> superseded = new HashMap<>();
+        for (Command command : batch) {
+            Command earlier = latest.put(command.employeeId(), command);
+            if (earlier != null) superseded.computeIfAbsent(command.employeeId(), employeeId -> new ArrayList<>()).add(earlier);
+        }
+
+        Map<Long, MembershipAck> acks = null;
+        try {
+            Map<Long, Long> departmentOfEmployee = new LinkedHashMap<>();
+            latest.forEach((employeeId, command) -> departmentOfEmployee.put(employeeId, command.departmentId()));
+            acks = retryingTransaction.execute(status -> workerAssignmentWriter.write(departmentOfEmployee));
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} assignments failed, applying them one by one: {}", latest.size(),
+                    NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+
+        for (Command command : latest.values()) {
+            List<Command> earlier = superseded.getOrDefault(command.employeeId(), List.of());
+            MembershipAck ack;
+            try {
+                ack = acks != null ? acks.get(command.employeeId())
+                        : departmentService.assignWorkerToDepartment(command.departmentId(), command.employeeId());
+            } catch (RuntimeException e) {
+                fail(command, e);
+                earlier.forEach(other -> fail(other, e));
+                continue;
+            }
+            if (ack == null) {
+                //nothing was written for the employee, the earlier commands end with the reason and not as "not found" themselves
+                String rejection = "Department " + command.departmentId() + " or employee " + command.employeeId() + " not found";
+                complete(command, null, AssignmentCommandView.Status.REJECTED, rejection);
+                earlier.forEach(other -> complete(other, null, AssignmentCommandView.Status.SUPERSEDED, rejection));
+                continue;
+            }
+            complete(command, ack, AssignmentCommandView.Status.COMPLETED, null);
+            earlier.forEach(other -> complete(other, ack, AssignmentCommandView.Status.SUPERSEDED, null));
+        }
+    }
+
+    //a null ack completes the future with null, like assignWorkerToDepartment returns null for an unknown department or employee
+    private void complete(Command command, MembershipAck ack, AssignmentCommandView.Status status, String error) {
+        commands.put(command.id(), command.view(status, ack, error));
+        command.result().complete(ack);
+    }
+
+    //a batch that breaks off fails all of its commands, the ones that are completed already keep their outcome
+    private void fail(Command command, Exception e) {
+        if (command.result().isDone()) return;
+        commands.put(command.id(), command.view(AssignmentCommandView.Status.FAILED, null,
+                NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+        command.result().completeExceptionally(e);
+    }
+
+    public record Submission(String commandId, CompletableFuture<MembershipAck> result) {
+    }
+
+    private record Command(String id, Long departmentId, Long employeeId, CompletableFuture<MembershipAck> result) {
+
+        private AssignmentCommandView view(AssignmentCommandView.Status status, MembershipAck ack, String error) {
+            return new AssignmentCommandView(id, status, departmentId, employeeId, ack, error);
+        }
+    }
+}
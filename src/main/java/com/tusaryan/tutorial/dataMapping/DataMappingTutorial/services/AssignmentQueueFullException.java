@@ -0,0 +1,9 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+//backpressure of the AssignmentPipeline, the writer is behind and the queue did not free up in time
+public class AssignmentQueueFullException extends RuntimeException {
+
+    public AssignmentQueueFullException(int queued) {
+        super("Assignment queue is full (" + queued + " commands waiting), try again later");
+    }
+}
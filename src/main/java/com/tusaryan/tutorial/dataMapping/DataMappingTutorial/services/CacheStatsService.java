@@ -0,0 +1,33 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.CacheStats;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class CacheStatsService {
+
+    private final CacheManager cacheManager;
+
+    public CacheStatsService(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    //counters are only recorded when the caffeine spec contains "recordStats"
+    public List<CacheStats> getCacheStats() {
+        List<CacheStats> cacheStats = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+                com.github.benmanes.caffeine.cache.stats.CacheStats stats = nativeCache.stats();
+                cacheStats.add(new CacheStats(name, nativeCache.estimatedSize(),
+                        stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount()));
+            }
+        }
+        return cacheStats;
+    }
+}
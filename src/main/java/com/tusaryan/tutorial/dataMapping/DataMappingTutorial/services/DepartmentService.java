@@ -1,61 +1,150 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
 
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs.ReadWriteRoutingDataSource;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.BatchAssignmentResult;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeadcount;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentVersions;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ETagged;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.RosterPage;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class DepartmentService {
 
+    private static final int DEFAULT_ROSTER_PAGE_SIZE = 100;
+    private static final int MAX_ROSTER_PAGE_SIZE = 1000;
+
     private final DepartmentRepository departmentRepository;
 
     //one of the benefit of MVC architecture that now we can use any repository inside our Service
     //to access Employee Repo inside our department.
     private final EmployeeRepository employeeRepository;
 
-    public DepartmentService(DepartmentRepository departmentRepository, EmployeeRepository employeeRepository) {
+    private final OrgCache orgCache;
+
+    private final HeadcountCounters headcountCounters;
+
+    private final EmployeeNameIndex employeeNameIndex;
+
+    //cached reads are not @Transactional, a cache hit should not open a transaction/borrow a connection.
+    //only a cache miss runs its queries inside this read only transaction, on the primary: what it reads is kept.
+    private final TransactionTemplate primaryReadTransaction;
+
+    //assignments run in transactions that are retried when they lost a race with a concurrent assignment
+    private final RetryingTransaction retryingTransaction;
+
+    private final WorkerAssignmentWriter workerAssignmentWriter;
+
+    public DepartmentService(DepartmentRepository departmentRepository, EmployeeRepository employeeRepository,
+                             OrgCache orgCache, HeadcountCounters headcountCounters, EmployeeNameIndex employeeNameIndex,
+                             RetryingTransaction retryingTransaction, WorkerAssignmentWriter workerAssignmentWriter,
+                             PlatformTransactionManager transactionManager) {
         this.departmentRepository = departmentRepository;
         this.employeeRepository = employeeRepository;
+        this.orgCache = orgCache;
+        this.headcountCounters = headcountCounters;
+        this.employeeNameIndex = employeeNameIndex;
+        this.retryingTransaction = retryingTransaction;
+        this.workerAssignmentWriter = workerAssignmentWriter;
+        this.primaryReadTransaction = ReadWriteRoutingDataSource.primaryReadTransaction(transactionManager);
     }
 
-    public DepartmentEntity createNewDepartment(DepartmentEntity departmentEntity) {
-        return departmentRepository.save(departmentEntity);
+    @Transactional
+    public DepartmentView createNewDepartment(DepartmentEntity departmentEntity) {
+        DepartmentEntity savedDepartment = departmentRepository.save(departmentEntity);
+        DepartmentView department = loadDepartmentView(savedDepartment.getId());
+        orgCache.putDepartment(department);
+        headcountCounters.departmentCreated(department.id(), department.manager() != null);
+        //the department could have been created with a manager already
+        if (department.manager() != null) orgCache.evictManagers(department.manager().id());
+        return department;
     }
 
-    public DepartmentEntity getDepartmentById(Long id) {
-        return departmentRepository.findById(id).orElse(null);
+    //earlier -> findById + Jackson calling the lazy getWorkers()/getFreelancers() while serializing, outside any query plan.
+    //now the read model is built with a fixed number of queries: department + manager, workers, freelancers.
+    public DepartmentView getDepartmentById(Long id) {
+        return orgCache.department(id, () -> primaryReadTransaction.execute(status -> loadDepartmentView(id)));
     }
 
-    public DepartmentEntity assignManagerToDepartment(Long departmentId, Long employeeId) {
-        //to fetch the department to assign its manager, now we're assuming department with this id is present. Else we will throw exception using ".orElseThrow()"
-        //DepartmentEntity departmentEntity = departmentRepository.findById(departmentId).orElse(null);
-        //alternate method
-        Optional<DepartmentEntity> departmentEntity = departmentRepository.findById(departmentId);
+    //strong ETag of GET /departments/{id}: version of the department row (title, manager) + roster_version (workers,
+    //freelancers). both are columns, so every instance hands out the same ETag for the same state, also after a restart.
+    //a conditional GET reads them with one select by primary key (never the rosters), even when the view is cached:
+    //the cached view can be older than the database (changed through another instance), then it is evicted.
+    //null when there is no such department.
+    public String getDepartmentETag(Long departmentId) {
+        DepartmentVersions versions = primaryReadTransaction.execute(status -> departmentRepository.findVersionsById(departmentId));
+        if (versions == null) return null;
+        DepartmentView cached = orgCache.cachedDepartment(departmentId);
+        if (cached != null && !departmentETag(cached).equals(departmentETag(departmentId, versions.version(), versions.rosterVersion()))) {
+            orgCache.evictDepartments(departmentId);
+        }
+        return departmentETag(departmentId, versions.version(), versions.rosterVersion());
+    }
+
+    //the ETag comes from the view itself, it always describes the body it is sent with
+    public ETagged<DepartmentView> getDepartmentWithETag(Long departmentId) {
+        DepartmentView department = getDepartmentById(departmentId);
+        return department == null ? null : new ETagged<>(departmentETag(department), department);
+    }
 
-        //get that Employee
-        Optional<EmployeeEntity> employeeEntity = employeeRepository.findById(employeeId);
-        //EmployeeEntity employeeEntity = employeeRepository.findById(employeeId).orElse(null);
+    //two managers assigned to one department at the same time: the second save fails its version check and runs again
+    //on the updated row, so the manager it replaces (and the index entry it evicts) is the one the first assignment set.
+    public DepartmentView assignManagerToDepartment(Long departmentId, Long employeeId) {
+        return retryingTransaction.execute(status -> {
+            //to fetch the department to assign its manager, now we're assuming department with this id is present. Else we will throw exception using ".orElseThrow()"
+            //DepartmentEntity departmentEntity = departmentRepository.findById(departmentId).orElse(null);
+            //alternate method
+            Optional<DepartmentEntity> departmentEntity = departmentRepository.findById(departmentId);
 
-        //mapping the manager i.e. employee with the department
-        //to get the department. "department" used just below in .map is just a variable name to take that particular department and map it with the manager
-        //always use flapMap when dealing with nested map
-        return departmentEntity.flatMap(department ->
-                //to get the employee
-                employeeEntity.map(employee -> {
-                    //add/set manager i.e. employee to the department. this is currently inside our java object
-                    department.setManager(employee);
+            //get that Employee
+            Optional<EmployeeEntity> employeeEntity = employeeRepository.findById(employeeId);
+            //EmployeeEntity employeeEntity = employeeRepository.findById(employeeId).orElse(null);
 
-                    //now saving it to DB and to perform that operation, that method is present inside our Department Repo
-                    //save this new department created inside repo
-                    return departmentRepository.save(department);
-                })).orElse(null);
+            //mapping the manager i.e. employee with the department
+            //to get the department. "department" used just below in .map is just a variable name to take that particular department and map it with the manager
+            //always use flapMap when dealing with nested map
+            return departmentEntity.flatMap(department ->
+                    //to get the employee
+                    employeeEntity.map(employee -> {
+                        //the old manager does not manage this department anymore, the new one does -> both index entries are stale
+                        EmployeeEntity previousManager = department.getManager();
+                        orgCache.evictManagers(previousManager == null ? null : previousManager.getId(), employee.getId());
+                        orgCache.evictDepartments(department.getId());
+                        headcountCounters.managerAssigned(department.getId());
+
+                        //add/set manager i.e. employee to the department. this is currently inside our java object
+                        department.setManager(employee);
+
+                        //now saving it to DB and to perform that operation, that method is present inside our Department Repo
+                        //save this new department created inside repo
+                        return departmentRepository.save(department);
+                    }))
+                    //controllers don't get entities anymore, so we send back the read model of the updated department
+                    .map(department -> loadDepartmentView(department.getId()))
+                    .orElse(null);
+        });
     }
 
-    public DepartmentEntity assignedDepartmentOfManager(Long employeeId) {
+    public DepartmentView assignedDepartmentOfManager(Long employeeId) {
         /*Now we have two ways of doing this
         * 1st -> from department we can get the manager which has this employeeId
         * 2nd -> we can directly find the employee from employeeId and get its managed_department field.
@@ -66,7 +155,7 @@ public class DepartmentService {
         //Optional<EmployeeEntity> employeeEntity = employeeRepository.findById(employeeId);
 
         //optimised to skip two api calls-> using builder pattern defined inside lombok, to create EmployeeEntity object
-        EmployeeEntity employeeEntity = EmployeeEntity.builder().id(employeeId).build();
+        //EmployeeEntity employeeEntity = EmployeeEntity.builder().id(employeeId).build();
 
         /*
         //2nd way
@@ -85,46 +174,237 @@ public class DepartmentService {
 
         //optimised two api calls. now we are doing one api call of department repo.
         //this findByManager only need employeeId to find the department. earlier we are passing the title/other fields too now rest of the fields inside employeeId will be empty and only id will be passed
-        return departmentRepository.findByManager(employeeEntity);
+        //return departmentRepository.findByManager(employeeEntity);
+
+        //read model -> the query only needs the manager id and returns the department with its rosters as a view.
+        //goes through the manager -> department index cache first, so a hit does not touch the database at all.
+        return orgCache.departmentOfManager(employeeId,
+                () -> primaryReadTransaction.execute(status ->
+                        departmentRepository.findHeaderByManagerId(employeeId).map(this::toDepartmentView).orElse(null)),
+                this::getDepartmentById);
     }
 
-    public DepartmentEntity assignWorkerToDepartment(Long departmentId, Long employeeId) {
-        Optional<DepartmentEntity> departmentEntity = departmentRepository.findById(departmentId);
+    //earlier we loaded the department and the employee, set employee.setWorkerDepartment(department), saved the employee
+    //and added it to department.getWorkers() -> this loaded the whole workers collection just to return it.
+    //now we only touch the one row of worker_department_mapping and send back a small acknowledgement.
+    public MembershipAck assignWorkerToDepartment(Long departmentId, Long employeeId) {
+        return retryingTransaction.execute(status -> {
+            //existsById is a "select count(*)" on the primary key, no entity (and no lazy collection) gets loaded.
+            //the employee row is locked (0 rows -> no such employee), the department row is only read
+            if (!departmentRepository.existsById(departmentId) || employeeRepository.lockForMembershipChange(employeeId) == 0) return null;
 
-        Optional<EmployeeEntity> employeeEntity = employeeRepository.findById(employeeId);
+            Long currentDepartmentId = employeeRepository.findWorkerDepartmentId(employeeId);
+            if (departmentId.equals(currentDepartmentId)) {
+                return new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, false);
+            }
+            //an employee works in only one department, so moving an employee is delete + insert of that single row
+            if (currentDepartmentId != null) employeeRepository.deleteWorkerMapping(employeeId);
+            employeeRepository.insertWorkerMapping(employeeId, departmentId);
+            //both rosters changed
+            rostersChanged(departmentId, currentDepartmentId);
+            headcountCounters.workersChanged(departmentId, 1);
+            if (currentDepartmentId != null) headcountCounters.workersChanged(currentDepartmentId, -1);
+            employeeNameIndex.workerAssigned(employeeId, departmentId);
+            return new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, true);
+        });
+    }
+
+    public MembershipAck removeWorkerFromDepartment(Long departmentId, Long employeeId) {
+        return retryingTransaction.execute(status -> {
+            if (employeeRepository.lockForMembershipChange(employeeId) == 0) {
+                return new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, false);
+            }
+            boolean removed = employeeRepository.deleteWorkerMapping(employeeId, departmentId) > 0;
+            if (removed) {
+                rostersChanged(departmentId);
+                headcountCounters.workersChanged(departmentId, -1);
+                employeeNameIndex.workerRemoved(employeeId, departmentId);
+            }
+            return new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, removed);
+        });
+    }
 
-        return departmentEntity.flatMap(department ->
-                employeeEntity.map(employee -> {
-                    //set the department of an employee
-                    employee.setWorkerDepartment(department);
-                    //save the new data to employee repo
-                    employeeRepository.save(employee);
+    //same idea for freelancers -> earlier employee.getFreelanceDepartments().add(department) and department.getFreelancers().add(employee)
+    //loaded every existing row of both sides of the @ManyToMany before inserting one link.
+    public MembershipAck assignFreelancerToDepartment(Long departmentId, Long employeeId) {
+        return retryingTransaction.execute(status -> {
+            if (!departmentRepository.existsById(departmentId) || employeeRepository.lockForMembershipChange(employeeId) == 0) return null;
 
-                    //to fetch the data back. remember we are not saving it again in DB
-                    department.getWorkers().add(employee);
-                    return department;
-                })).orElse(null);
+            //counted after the lock, so a concurrent assignment of the same employee can't slip in between count and insert
+            if (employeeRepository.countFreelancerMapping(employeeId, departmentId) > 0) {
+                return new MembershipAck(departmentId, employeeId, MembershipAck.Role.FREELANCER, false);
+            }
+            employeeRepository.insertFreelancerMapping(employeeId, departmentId);
+            rostersChanged(departmentId);
+            headcountCounters.freelancersChanged(departmentId, 1);
+            employeeNameIndex.freelancerAssigned(employeeId, departmentId);
+            return new MembershipAck(departmentId, employeeId, MembershipAck.Role.FREELANCER, true);
+        });
     }
 
-    public DepartmentEntity assignFreelancerToDepartment(Long departmentId, Long employeeId) {
-        Optional<DepartmentEntity> departmentEntity = departmentRepository.findById(departmentId);
+    public MembershipAck removeFreelancerFromDepartment(Long departmentId, Long employeeId) {
+        return retryingTransaction.execute(status -> {
+            if (employeeRepository.lockForMembershipChange(employeeId) == 0) {
+                return new MembershipAck(departmentId, employeeId, MembershipAck.Role.FREELANCER, false);
+            }
+            boolean removed = employeeRepository.deleteFreelancerMapping(employeeId, departmentId) > 0;
+            if (removed) {
+                rostersChanged(departmentId);
+                headcountCounters.freelancersChanged(departmentId, -1);
+                employeeNameIndex.freelancerRemoved(employeeId, departmentId);
+            }
+            return new MembershipAck(departmentId, employeeId, MembershipAck.Role.FREELANCER, removed);
+        });
+    }
 
-        Optional<EmployeeEntity> employeeEntity = employeeRepository.findById(employeeId);
+    //batch version of assignWorkerToDepartment -> one IN query per step for all employees and one transaction for all the writes,
+    //the mapping rows go out as two JDBC batches (WorkerAssignmentWriter, the same code as the group commit of AssignmentPipeline)
+    public BatchAssignmentResult assignWorkersToDepartment(Long departmentId, List<Long> employeeIds) {
+        return retryingTransaction.execute(status -> {
+            if (!departmentRepository.existsById(departmentId)) return null;
+
+            Map<Long, Long> departmentOfEmployee = new LinkedHashMap<>();
+            requestedIds(employeeIds).forEach(employeeId -> departmentOfEmployee.put(employeeId, departmentId));
+            Map<Long, MembershipAck> acks = workerAssignmentWriter.write(departmentOfEmployee);
+
+            List<Long> assigned = new ArrayList<>();
+            List<Long> alreadyAssigned = new ArrayList<>();
+            List<Long> missing = new ArrayList<>();
+            for (Long employeeId : departmentOfEmployee.keySet()) {
+                MembershipAck ack = acks.get(employeeId);
+                if (ack == null) missing.add(employeeId);
+                else if (ack.changed()) assigned.add(employeeId);
+                else alreadyAssigned.add(employeeId);
+            }
+            return new BatchAssignmentResult(departmentId, assigned, alreadyAssigned, missing);
+        });
+    }
 
-        return departmentEntity.flatMap(department ->
-                employeeEntity.map(employee -> {
-                    //can go to either of the entities and save employee there, and it's all done. Since we have set cascade to ALL, so it will automatically update the other entity for us. getting some issues here using department to save will resolve later.
-                    //calling save method now in employee entity as it has the @JoinTable and freelanceDepartment. So, it is making more sense to call save method on employee entity and not department entity.
-                    //to assign/add department to employee/freelancer
+    //batch version of assignFreelancerToDepartment: the department and all requested employees (with their departments)
+    //are loaded once, we don't call save() per employee. the freelancer_department_mapping rows are inserted as JDBC batches at commit.
+    public BatchAssignmentResult assignFreelancersToDepartment(Long departmentId, List<Long> employeeIds) {
+        return retryingTransaction.execute(status -> {
+            DepartmentEntity department = departmentRepository.findById(departmentId).orElse(null);
+            if (department == null) return null;
+
+            Set<Long> requestedIds = requestedIds(employeeIds);
+            Map<Long, EmployeeEntity> employees = findEmployeesWithDepartments(requestedIds);
+
+            List<Long> assigned = new ArrayList<>();
+            List<Long> alreadyAssigned = new ArrayList<>();
+            List<Long> missing = new ArrayList<>();
+            for (Long employeeId : requestedIds) {
+                EmployeeEntity employee = employees.get(employeeId);
+                if (employee == null) {
+                    missing.add(employeeId);
+                } else if (employee.getFreelanceDepartments().contains(department)) {
+                    alreadyAssigned.add(employeeId);
+                } else {
+                    //fetch joined, so this does not trigger another select
                     employee.getFreelanceDepartments().add(department);
+                    assigned.add(employeeId);
+                }
+            }
+            //a freelancer just gets one more department, only this roster changed. the increment flushes the changed entities first (native query)
+            if (!assigned.isEmpty()) rostersChanged(departmentId);
+            headcountCounters.freelancersChanged(departmentId, assigned.size());
+            assigned.forEach(employeeId -> employeeNameIndex.freelancerAssigned(employeeId, departmentId));
+            return new BatchAssignmentResult(departmentId, assigned, alreadyAssigned, missing);
+        });
+    }
+
+    //every id once, in the order they were sent
+    private static Set<Long> requestedIds(List<Long> employeeIds) {
+        Set<Long> requestedIds = new LinkedHashSet<>(employeeIds);
+        requestedIds.remove(null);
+        return requestedIds;
+    }
+
+    //last step of every membership change: new roster_version for these departments (see DepartmentEntity.rosterVersion)
+    //and their cached views are stale. null ids (no department) are skipped
+    private void rostersChanged(Long... departmentIds) {
+        List<Long> changed = Arrays.stream(departmentIds).filter(Objects::nonNull).distinct().toList();
+        if (changed.isEmpty()) return;
+        departmentRepository.incrementRosterVersions(changed);
+        orgCache.evictDepartments(changed.toArray(Long[]::new));
+    }
+
+    //dashboards only need the sizes, counting happens in the database (GROUP BY over the mapping tables) instead of
+    //loading the rosters. with app.headcount.counters.enabled the counts are kept in memory after the first load.
+    public DepartmentHeadcount getHeadcount(Long departmentId) {
+        return headcountCounters.headcount(departmentId, () -> primaryReadTransaction.execute(status ->
+                departmentRepository.findHeadcountById(departmentId).map(DepartmentService::toHeadcount).orElse(null)));
+    }
+
+    public List<DepartmentHeadcount> getHeadcounts() {
+        return headcountCounters.headcounts(() -> primaryReadTransaction.execute(status ->
+                departmentRepository.findAllHeadcounts().stream().map(DepartmentService::toHeadcount).toList()));
+    }
+
+    private static DepartmentHeadcount toHeadcount(DepartmentRepository.HeadcountRow row) {
+        return new DepartmentHeadcount(row.getDepartmentId(), row.getWorkers(), row.getFreelancers(), row.getManagerId() != null);
+    }
+
+    private Map<Long, EmployeeEntity> findEmployeesWithDepartments(Set<Long> employeeIds) {
+        if (employeeIds.isEmpty()) return Map.of();
+        return employeeRepository.findAllWithDepartmentsByIdIn(employeeIds).stream()
+                .collect(Collectors.toMap(EmployeeEntity::getId, Function.identity()));
+    }
+
+    //rosters are read page by page instead of through department.getWorkers()/getFreelancers(), which always loads every member.
+    @Transactional(readOnly = true)
+    public RosterPage getWorkersPage(Long departmentId, Long afterId, Integer size) {
+        int pageSize = rosterPageSize(size);
+        return RosterPage.of(employeeRepository.findWorkerPage(departmentId, afterIdOrStart(afterId), PageRequest.ofSize(pageSize)), pageSize);
+    }
+
+    @Transactional(readOnly = true)
+    public RosterPage getFreelancersPage(Long departmentId, Long afterId, Integer size) {
+        int pageSize = rosterPageSize(size);
+        return RosterPage.of(employeeRepository.findFreelancerPage(departmentId, afterIdOrStart(afterId), PageRequest.ofSize(pageSize)), pageSize);
+    }
 
-                    //calling the save method on employee to save that same employee
-                    employeeRepository.save(employee);
+    //hands every member to the consumer one by one while the result set is still being read, so memory stays constant
+    //no matter how big the department is. the transaction (and the connection) is held until the last row is consumed.
+    @Transactional(readOnly = true)
+    public void streamWorkers(Long departmentId, Consumer<EmployeeView> consumer) {
+        try (Stream<EmployeeView> workers = employeeRepository.streamWorkers(departmentId)) {
+            workers.forEach(consumer);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamFreelancers(Long departmentId, Consumer<EmployeeView> consumer) {
+        try (Stream<EmployeeView> freelancers = employeeRepository.streamFreelancers(departmentId)) {
+            freelancers.forEach(consumer);
+        }
+    }
+
+    private DepartmentView loadDepartmentView(Long departmentId) {
+        return departmentRepository.findHeaderById(departmentId).map(this::toDepartmentView).orElse(null);
+    }
+
+    private DepartmentView toDepartmentView(DepartmentHeader header) {
+        return new DepartmentView(header.id(), header.title(), header.version(), header.rosterVersion(), header.manager(),
+                employeeRepository.findWorkerPage(header.id(), 0L, Pageable.unpaged()),
+                employeeRepository.findFreelancerPage(header.id(), 0L, Pageable.unpaged()));
+    }
+
+    private static String departmentETag(DepartmentView department) {
+        return departmentETag(department.id(), department.version(), department.rosterVersion());
+    }
+
+    private static String departmentETag(Long departmentId, Long version, long rosterVersion) {
+        return departmentId + "-" + version + "-" + rosterVersion;
+    }
+
+    private static int rosterPageSize(Integer size) {
+        if (size == null || size <= 0) return DEFAULT_ROSTER_PAGE_SIZE;
+        return Math.min(size, MAX_ROSTER_PAGE_SIZE);
+    }
 
-                    //adding this employee to the department so that we can return the fresh department.
-                    department.getFreelancers().add(employee);
-                    //Return this newly created department
-                    return department;
-                })).orElse(null);
+    //ids come from a sequence starting at 1, so 0 means "from the beginning"
+    private static Long afterIdOrStart(Long afterId) {
+        return afterId == null ? 0L : afterId;
     }
-}
\ No newline at end of file
+}
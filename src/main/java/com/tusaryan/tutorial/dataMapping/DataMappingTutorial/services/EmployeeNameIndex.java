@@ -0,0 +1,272 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs.ReadWriteRoutingDataSource;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+//optional (app.employee-search.name-index.enabled) in-memory index for GET /employees/search. every employee sorted by
+//folded name and id in a skip list, and the same per department for its workers and its freelancers, so a prefix is
+//a seek + a walk over one page, with or without a department filter.
+//loaded from the database once the application is ready, after that createNewEmployee and the assign/remove operations
+//apply their changes once their transaction has committed. until it is loaded (and while an import runs) searches go
+//to the database. per instance, like OrgCache.
+//names are folded like the collation of employees.name (utf8mb4_0900_ai_ci, see db/migration): case and accents are
+//ignored, trailing spaces are not. a page continues where the database would continue it for letters and digits,
+//only the relative order of some punctuation differs (code points here, UCA weights in MySQL).
+@Component
+public class EmployeeNameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeNameIndex.class);
+
+    //combining marks left over by the NFD decomposition ("é" -> "e" + U+0301)
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final boolean enabled;
+
+    private final EmployeeRepository employeeRepository;
+
+    private final TransactionTemplate primaryReadTransaction;
+
+    //null = not loaded
+    private volatile Index index;
+
+    //changes that committed while a rebuild was reading the database, replayed on the new index before it is used.
+    //every change sets an absolute state (worker of X, freelancer of Y or not), so replaying one that the rebuild already saw does no harm.
+    private List<Consumer<Index>> changesDuringRebuild;
+
+    private final Object lock = new Object();
+
+    public EmployeeNameIndex(EmployeeRepository employeeRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.employee-search.name-index.enabled:false}") boolean enabled) {
+        this.employeeRepository = employeeRepository;
+        this.enabled = enabled;
+        this.primaryReadTransaction = ReadWriteRoutingDataSource.primaryReadTransaction(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (enabled) rebuild();
+    }
+
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    //null when the index is not loaded, the caller has to ask the database then.
+    //same order, paging and filter precedence as the database queries: name, then id, starting after (afterName, afterId),
+    //workerOf before freelancerOf
+    public List<EmployeeView> search(String prefix, Long workerOf, Long freelancerOf, String afterName, Long afterId, int limit) {
+        Index current = index;
+        if (current == null) return null;
+
+        NavigableSet<Entry> names = workerOf != null ? current.workersOf(workerOf)
+                : freelancerOf != null ? current.freelancersOf(freelancerOf)
+                : current.names;
+        String key = fold(prefix);
+        Entry from = new Entry(key, Long.MIN_VALUE, null);
+        if (afterName != null) {
+            Entry after = new Entry(fold(afterName), afterId == null ? Long.MIN_VALUE : afterId, null);
+            if (Entry.ORDER.compare(after, from) > 0) from = after;
+        }
+        List<EmployeeView> found = new ArrayList<>(Math.min(limit, 64));
+        for (Entry entry : names.tailSet(from, false)) {
+            if (!entry.key.startsWith(key)) break;
+            found.add(new EmployeeView(entry.id, entry.name));
+            if (found.size() == limit) break;
+        }
+        return found;
+    }
+
+    public void employeeCreated(Long employeeId, String name) {
+        change(index -> index.employeeCreated(new Entry(fold(name), employeeId, name)));
+    }
+
+    public void workerAssigned(Long employeeId, Long departmentId) {
+        change(index -> index.workerAssigned(employeeId, departmentId));
+    }
+
+    public void workerRemoved(Long employeeId, Long departmentId) {
+        change(index -> index.workerRemoved(employeeId, departmentId));
+    }
+
+    public void freelancerAssigned(Long employeeId, Long departmentId) {
+        change(index -> index.freelancerAssigned(employeeId, departmentId));
+    }
+
+    public void freelancerRemoved(Long employeeId, Long departmentId) {
+        change(index -> index.freelancerRemoved(employeeId, departmentId));
+    }
+
+    //for writes that don't go through the operations above (bulk import). searches use the database until rebuild()
+    public void invalidate() {
+        if (!enabled) return;
+        synchronized (lock) {
+            index = null;
+        }
+    }
+
+    //reads everything again. one rebuild at a time, the index in use stays usable until the new one replaces it
+    public synchronized void rebuild() {
+        if (!enabled) return;
+        synchronized (lock) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        long startedAt = System.nanoTime();
+        Index fresh = new Index();
+        try {
+            primaryReadTransaction.executeWithoutResult(status -> {
+                try (var employees = employeeRepository.streamAll()) {
+                    employees.forEach(employee -> fresh.employeeCreated(new Entry(fold(employee.name()), employee.id(), employee.name())));
+                }
+                try (var workers = employeeRepository.streamWorkerMemberships()) {
+                    workers.forEach(row -> fresh.workerAssigned(row.getEmployeeId(), row.getDepartmentId()));
+                }
+                try (var freelancers = employeeRepository.streamFreelancerMemberships()) {
+                    freelancers.forEach(row -> fresh.freelancerAssigned(row.getEmployeeId(), row.getDepartmentId()));
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                changesDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            changesDuringRebuild.forEach(change -> change.accept(fresh));
+            changesDuringRebuild = null;
+            index = fresh;
+        }
+        log.info("Employee name index loaded: {} employees in {} ms", fresh.names.size(), (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private void change(Consumer<Index> apply) {
+        if (!enabled) return;
+        Runnable applyNow = () -> {
+            synchronized (lock) {
+                Index current = index;
+                if (current != null) apply.accept(current);
+                if (changesDuringRebuild != null) changesDuringRebuild.add(apply);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyNow.run();
+                }
+            });
+        } else {
+            applyNow.run();
+        }
+    }
+
+    //case and accents folded away, see the class comment
+    private static String fold(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    //written under EmployeeNameIndex.lock only, read by searches without a lock
+    private static final class Index {
+
+        private final ConcurrentSkipListSet<Entry> names = new ConcurrentSkipListSet<>(Entry.ORDER);
+
+        private final Map<Long, Entry> employees = new ConcurrentHashMap<>();
+
+        //per department index of its workers / freelancers, same order as names
+        private final Map<Long, NavigableSet<Entry>> workers = new ConcurrentHashMap<>();
+
+        private final Map<Long, NavigableSet<Entry>> freelancers = new ConcurrentHashMap<>();
+
+        //memberships by employee. also kept for employees that are not in names yet (a membership streamed by a rebuild
+        //before the employee was), their entries are added to the departments once employeeCreated is replayed
+        private final Map<Long, Long> workerDepartments = new ConcurrentHashMap<>();
+
+        private final Map<Long, Set<Long>> freelancerDepartments = new ConcurrentHashMap<>();
+
+        NavigableSet<Entry> workersOf(Long departmentId) {
+            return workers.getOrDefault(departmentId, Collections.emptyNavigableSet());
+        }
+
+        NavigableSet<Entry> freelancersOf(Long departmentId) {
+            return freelancers.getOrDefault(departmentId, Collections.emptyNavigableSet());
+        }
+
+        void employeeCreated(Entry entry) {
+            names.add(entry);
+            employees.put(entry.id, entry);
+            Long workerOf = workerDepartments.get(entry.id);
+            if (workerOf != null) add(workers, workerOf, entry);
+            freelancerDepartments.getOrDefault(entry.id, Set.of()).forEach(departmentId -> add(freelancers, departmentId, entry));
+        }
+
+        //an employee works in one department, the assignment moves the entry out of the previous one
+        void workerAssigned(Long employeeId, Long departmentId) {
+            Long previous = workerDepartments.put(employeeId, departmentId);
+            Entry entry = employees.get(employeeId);
+            if (entry == null) return;
+            if (previous != null && !previous.equals(departmentId)) remove(workers, previous, entry);
+            add(workers, departmentId, entry);
+        }
+
+        void workerRemoved(Long employeeId, Long departmentId) {
+            if (!workerDepartments.remove(employeeId, departmentId)) return;
+            Entry entry = employees.get(employeeId);
+            if (entry != null) remove(workers, departmentId, entry);
+        }
+
+        void freelancerAssigned(Long employeeId, Long departmentId) {
+            freelancerDepartments.computeIfAbsent(employeeId, id -> ConcurrentHashMap.newKeySet()).add(departmentId);
+            Entry entry = employees.get(employeeId);
+            if (entry != null) add(freelancers, departmentId, entry);
+        }
+
+        void freelancerRemoved(Long employeeId, Long departmentId) {
+            Set<Long> departments = freelancerDepartments.get(employeeId);
+            if (departments == null || !departments.remove(departmentId)) return;
+            Entry entry = employees.get(employeeId);
+            if (entry != null) remove(freelancers, departmentId, entry);
+        }
+
+        private static void add(Map<Long, NavigableSet<Entry>> departments, Long departmentId, Entry entry) {
+            departments.computeIfAbsent(departmentId, id -> new ConcurrentSkipListSet<>(Entry.ORDER)).add(entry);
+        }
+
+        //an empty set stays, a department's roster usually fills up again
+        private static void remove(Map<Long, NavigableSet<Entry>> departments, Long departmentId, Entry entry) {
+            NavigableSet<Entry> members = departments.get(departmentId);
+            if (members != null) members.remove(entry);
+        }
+    }
+
+    //key is the folded name, name the original one that is returned
+    private record Entry(String key, long id, String name) {
+
+        private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key).thenComparingLong(Entry::id);
+    }
+}
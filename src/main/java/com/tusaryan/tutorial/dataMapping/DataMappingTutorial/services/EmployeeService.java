@@ -1,24 +1,103 @@
 package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
 
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs.ReadWriteRoutingDataSource;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeSearchPage;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
 import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 
 @Service
 public class EmployeeService {
 
+    //type-ahead shows a handful of names, a client that pages through everything can ask for more
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    private static final int MAX_SEARCH_PAGE_SIZE = 1000;
+
     private final EmployeeRepository employeeRepository;
 
-    public EmployeeService(EmployeeRepository employeeRepository, DepartmentRepository departmentRepository) {
+    private final OrgCache orgCache;
+
+    private final EmployeeNameIndex employeeNameIndex;
+
+    //same as in DepartmentService, only a cache miss opens a transaction. it reads the primary, the result is cached
+    private final TransactionTemplate primaryReadTransaction;
+
+    //searches that the name index can't answer, not cached -> a replica is good enough (when routing is on)
+    private final TransactionTemplate readOnlyTransaction;
+
+    public EmployeeService(EmployeeRepository employeeRepository, DepartmentRepository departmentRepository, OrgCache orgCache,
+                           EmployeeNameIndex employeeNameIndex, PlatformTransactionManager transactionManager) {
         this.employeeRepository = employeeRepository;
+        this.orgCache = orgCache;
+        this.employeeNameIndex = employeeNameIndex;
+        this.primaryReadTransaction = ReadWriteRoutingDataSource.primaryReadTransaction(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
-    public EmployeeEntity createNewEmployee(EmployeeEntity employeeEntity) {
-        return employeeRepository.save(employeeEntity);
+    public EmployeeView createNewEmployee(EmployeeEntity employeeEntity) {
+        EmployeeEntity savedEmployee = employeeRepository.save(employeeEntity);
+        EmployeeView employee = new EmployeeView(savedEmployee.getId(), savedEmployee.getName());
+        orgCache.putEmployee(employee);
+        employeeNameIndex.employeeCreated(employee.id(), employee.name());
+        return employee;
+    }
+
+    //the view is only id + name, so the ETag is derived from the content and stays valid across restarts and instances.
+    //a SHA-256 of the name, not name.hashCode(): two names with the same 32 bit hash ("Aa" and "BB") would answer 304
+    //to a client that holds the other one
+    public String getEmployeeETag(EmployeeView employee) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(employee.name().getBytes(StandardCharsets.UTF_8));
+            return employee.id() + "-" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            //every java runtime has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //one select of the employee row, findById also loaded the eager managedDepartment/workerDepartment mappings.
+    //cached, see OrgCache
+    public EmployeeView getEmployeeById(Long id) {
+        return orgCache.employee(id, () -> primaryReadTransaction.execute(status -> employeeRepository.findViewById(id).orElse(null)));
+    }
+
+    //employees whose name starts with prefix, sorted by name. optionally only the workers (workerOf) or the freelancers
+    //(freelancerOf) of a department. answered by EmployeeNameIndex when it is enabled and loaded, else by the database.
+    public EmployeeSearchPage searchByName(String prefix, Long workerOf, Long freelancerOf,
+                                           String afterName, Long afterId, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_SEARCH_PAGE_SIZE : Math.min(size, MAX_SEARCH_PAGE_SIZE);
+        String namePrefix = prefix == null ? "" : prefix;
+
+        List<EmployeeView> items = employeeNameIndex.search(namePrefix, workerOf, freelancerOf, afterName, afterId, pageSize);
+        if (items == null) {
+            //first page -> ("", 0) is before every row
+            String seekName = afterName == null ? "" : afterName;
+            Long seekId = afterName == null || afterId == null ? 0L : afterId;
+            String pattern = escapeLike(namePrefix) + "%";
+            PageRequest limit = PageRequest.ofSize(pageSize);
+            items = readOnlyTransaction.execute(status -> {
+                if (workerOf != null) return employeeRepository.searchWorkersByName(workerOf, pattern, seekName, seekId, limit);
+                if (freelancerOf != null) return employeeRepository.searchFreelancersByName(freelancerOf, pattern, seekName, seekId, limit);
+                return employeeRepository.searchByName(pattern, seekName, seekId, limit);
+            });
+        }
+        return EmployeeSearchPage.of(items, pageSize);
     }
 
-    public EmployeeEntity getEmployeeById(Long id) {
-        return employeeRepository.findById(id).orElse(null);
+    //"%" and "_" typed by the user are literal characters, not wildcards
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
     }
 }
@@ -0,0 +1,161 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeadcount;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//optional (app.headcount.counters.enabled) in-memory headcounts, so a dashboard read is a map lookup instead of a GROUP BY.
+//a department is loaded from the database once, after that the assign/remove operations of DepartmentService
+//apply their +1/-1 once their transaction has committed. departments that are not loaded yet ignore the deltas.
+//like OrgCache this is per instance, every instance keeps its own counters.
+@Component
+public class HeadcountCounters {
+
+    private final boolean enabled;
+
+    private final Map<Long, Counts> counts = new ConcurrentHashMap<>();
+
+    //changes registered with a transaction that did not complete yet. afterCompletion runs after the commit, so the rows
+    //of a pending change may already be in the database: a load now would contain it and then get its delta on top.
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    //incremented when a change is applied (or rolled back). a load that overlapped a change may or may not contain it,
+    //so it is only kept when no change was pending at its end and none completed while it ran.
+    private final AtomicLong completedChanges = new AtomicLong();
+
+    //completing a change and keeping a load happen one at a time, a delta is never applied between the check and the put
+    private final Object lock = new Object();
+
+    //true once every department was loaded by headcounts(), new departments are added by departmentCreated()
+    private volatile boolean complete;
+
+    public HeadcountCounters(@Value("${app.headcount.counters.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DepartmentHeadcount headcount(Long departmentId, Supplier<DepartmentHeadcount> loader) {
+        if (!enabled) return loader.get();
+        Counts cached = counts.get(departmentId);
+        if (cached != null) return cached.toHeadcount(departmentId);
+
+        long completedBefore = completedChanges.get();
+        DepartmentHeadcount headcount = loader.get();
+        if (headcount != null) {
+            synchronized (lock) {
+                if (unchangedSince(completedBefore)) counts.putIfAbsent(departmentId, new Counts(headcount));
+            }
+        }
+        return headcount;
+    }
+
+    public List<DepartmentHeadcount> headcounts(Supplier<List<DepartmentHeadcount>> loader) {
+        if (!enabled) return loader.get();
+        if (complete) {
+            return counts.entrySet().stream()
+                    .map(entry -> entry.getValue().toHeadcount(entry.getKey()))
+                    .sorted(Comparator.comparing(DepartmentHeadcount::departmentId))
+                    .toList();
+        }
+
+        long completedBefore = completedChanges.get();
+        List<DepartmentHeadcount> headcounts = loader.get();
+        synchronized (lock) {
+            if (unchangedSince(completedBefore)) {
+                headcounts.forEach(headcount -> counts.putIfAbsent(headcount.departmentId(), new Counts(headcount)));
+                complete = true;
+            }
+        }
+        return headcounts;
+    }
+
+    public void departmentCreated(Long departmentId, boolean hasManager) {
+        change(() -> counts.putIfAbsent(departmentId, new Counts(new DepartmentHeadcount(departmentId, 0, 0, hasManager))));
+    }
+
+    public void managerAssigned(Long departmentId) {
+        change(() -> {
+            Counts department = counts.get(departmentId);
+            if (department != null) department.hasManager = true;
+        });
+    }
+
+    public void workersChanged(Long departmentId, long delta) {
+        change(() -> {
+            Counts department = counts.get(departmentId);
+            if (department != null) department.workers.addAndGet(delta);
+        });
+    }
+
+    public void freelancersChanged(Long departmentId, long delta) {
+        change(() -> {
+            Counts department = counts.get(departmentId);
+            if (department != null) department.freelancers.addAndGet(delta);
+        });
+    }
+
+    //for writes that don't go through the assign operations (bulk import), everything is loaded again
+    public void clear() {
+        if (!enabled) return;
+        change(() -> {
+            complete = false;
+            counts.clear();
+        });
+    }
+
+    private void change(Runnable apply) {
+        if (!enabled) return;
+        pendingChanges.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    //a rolled back change is not applied, but still counts as a change for loads that overlapped it
+                    complete(status == STATUS_COMMITTED ? apply : null);
+                }
+            });
+        } else {
+            complete(apply);
+        }
+    }
+
+    private void complete(Runnable apply) {
+        synchronized (lock) {
+            if (apply != null) apply.run();
+            completedChanges.incrementAndGet();
+            pendingChanges.decrementAndGet();
+        }
+    }
+
+    private boolean unchangedSince(long completedBefore) {
+        return pendingChanges.get() == 0 && completedChanges.get() == completedBefore;
+    }
+
+    private static final class Counts {
+
+        private final AtomicLong workers;
+
+        private final AtomicLong freelancers;
+
+        private volatile boolean hasManager;
+
+        private Counts(DepartmentHeadcount headcount) {
+            this.workers = new AtomicLong(headcount.workers());
+            this.freelancers = new AtomicLong(headcount.freelancers());
+            this.hasManager = headcount.hasManager();
+        }
+
+        private DepartmentHeadcount toHeadcount(Long departmentId) {
+            return new DepartmentHeadcount(departmentId, workers.get(), freelancers.get(), hasManager);
+        }
+    }
+}
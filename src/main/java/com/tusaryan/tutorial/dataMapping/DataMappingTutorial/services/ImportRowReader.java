@@ -0,0 +1,119 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportRow;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportJobEntity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+//reads an import body one line at a time, only the current line is in memory.
+//a line that can't be parsed becomes an invalid row instead of stopping the whole import.
+//blank lines and a CSV header line ("type,...") are skipped and are not counted as rows.
+public class ImportRowReader implements Iterator<ImportRow> {
+
+    private final BufferedReader reader;
+
+    private final ImportJobEntity.Format format;
+
+    private final ObjectMapper objectMapper;
+
+    private ImportRow nextRow;
+
+    private boolean firstLine = true;
+
+    public ImportRowReader(InputStream body, ImportJobEntity.Format format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null) nextRow = readRow();
+        return nextRow != null;
+    }
+
+    @Override
+    public ImportRow next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ImportRow row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    private ImportRow readRow() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean header = firstLine && format == ImportJobEntity.Format.CSV && line.toLowerCase(Locale.ROOT).startsWith("type,");
+                firstLine = false;
+                if (header || line.isBlank()) continue;
+                return format == ImportJobEntity.Format.CSV ? parseCsv(line) : parseNdjson(line);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ImportRow parseNdjson(String line) {
+        try {
+            ImportRow row = objectMapper.readValue(line, ImportRow.class);
+            if (row.type() == null) return ImportRow.invalid("Row without type: " + line);
+            return new ImportRow(row.type().trim().toLowerCase(Locale.ROOT), row.ref(), row.name(), row.department(), row.employee(), null);
+        } catch (JsonProcessingException e) {
+            return ImportRow.invalid("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    //type,ref,name for department/employee rows and type,department,employee for the relationship rows
+    private static ImportRow parseCsv(String line) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() != 3) return ImportRow.invalid("Expected 3 columns but got " + fields.size() + ": " + line);
+        String type = fields.get(0).trim().toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "department", "employee" -> new ImportRow(type, fields.get(1).trim(), fields.get(2), null, null, null);
+            default -> new ImportRow(type, null, null, fields.get(1).trim(), fields.get(2).trim(), null);
+        };
+    }
+
+    //RFC 4180 quoting -> "a, b" is one field and "" inside quotes is a quote. fields can't span lines.
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,352 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportJobView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportRow;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.*;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.ImportJobRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.ImportRefRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.util.*;
+
+//bulk import of departments, employees and their manager/worker/freelancer relationships.
+//the body is read row by row and written in chunks, every chunk in its own transaction:
+// - new departments/employees are persisted with a flush + clear every jdbc batch, so the persistence context stays small
+// - the relationship rows go straight into the mapping tables as JDBC batches
+// - the progress of the job is updated in the same transaction, a failed chunk is rolled back and reported, the import goes on
+//an interrupted import is resumed by sending the same body again to the same job, the rows of committed chunks are skipped
+//and the failed chunks are tried again.
+@Service
+public class ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    //a job view lists at most this many chunk errors, the job keeps all of them to know which chunks to retry
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1000;
+
+    private final ImportJobRepository importJobRepository;
+
+    private final ImportRefRepository importRefRepository;
+
+    private final EntityManager entityManager;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final OrgCache orgCache;
+
+    private final HeadcountCounters headcountCounters;
+
+    private final EmployeeNameIndex employeeNameIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    private final int flushInterval;
+
+    public ImportService(ImportJobRepository importJobRepository,
+                         ImportRefRepository importRefRepository,
+                         EntityManager entityManager,
+                         NamedParameterJdbcTemplate jdbcTemplate,
+                         ObjectMapper objectMapper,
+                         OrgCache orgCache,
+                         HeadcountCounters headcountCounters,
+                         EmployeeNameIndex employeeNameIndex,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.import.chunk-size:1000}") int chunkSize,
+                         @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int flushInterval) {
+        this.importJobRepository = importJobRepository;
+        this.importRefRepository = importRefRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.orgCache = orgCache;
+        this.headcountCounters = headcountCounters;
+        this.employeeNameIndex = employeeNameIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @Transactional
+    public ImportJobView createImportJob(ImportJobEntity.Format format) {
+        return toImportJobView(importJobRepository.save(new ImportJobEntity(format)));
+    }
+
+    //imports the body into a job created by createImportJob. sending the same body again resumes the job:
+    //the rows of committed chunks are skipped and the chunks that failed are imported again
+    public ImportJobView importRows(Long jobId, InputStream body) {
+        ResumePoint resumePoint = transactionTemplate.execute(status -> importJobRepository.findById(jobId)
+                .map(job -> {
+                    job.setStatus(ImportJobEntity.Status.RUNNING);
+                    return new ResumePoint(job.getFormat(), job.getProcessedRows() + job.getFailedRows(), List.copyOf(job.getErrors()));
+                })
+                .orElse(null));
+        if (resumePoint == null) return null;
+        //searches go to the database until the import is done, the index is rebuilt once at the end
+        employeeNameIndex.invalidate();
+
+        try {
+            Iterator<ImportRow> rows = new ImportRowReader(body, resumePoint.format(), objectMapper);
+            long rowNumber = 0;
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+            //rows an earlier run of this job got through. a failed chunk may have referred to a row of a later chunk,
+            //now that the later chunk is committed it can succeed
+            Iterator<ImportChunkError> failedChunks = resumePoint.failedChunks().iterator();
+            ImportChunkError failedChunk = failedChunks.hasNext() ? failedChunks.next() : null;
+            while (rowNumber < resumePoint.doneRows() && rows.hasNext()) {
+                ImportRow row = rows.next();
+                rowNumber++;
+                if (failedChunk == null || rowNumber < failedChunk.getFirstRow()) continue;
+                chunk.add(row);
+                if (rowNumber == failedChunk.getLastRow()) {
+                    importChunk(jobId, failedChunk.getFirstRow(), chunk, failedChunk);
+                    chunk.clear();
+                    failedChunk = failedChunks.hasNext() ? failedChunks.next() : null;
+                }
+            }
+            //a body that ends in the middle of a failed chunk is not the body of this job, that chunk stays failed
+            chunk.clear();
+
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                rowNumber++;
+                if (chunk.size() == chunkSize) {
+                    importChunk(jobId, rowNumber - chunk.size() + 1, chunk, null);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) importChunk(jobId, rowNumber - chunk.size() + 1, chunk, null);
+        } catch (RuntimeException e) {
+            //e.g. the client went away while sending the body -> everything up to the last committed chunk is kept
+            setStatus(jobId, ImportJobEntity.Status.INTERRUPTED);
+            throw e;
+        } finally {
+            //the chunks may have changed any department. once for the whole import, the caches are loaded again lazily
+            orgCache.clear();
+            headcountCounters.clear();
+            employeeNameIndex.rebuild();
+        }
+
+        setStatus(jobId, ImportJobEntity.Status.COMPLETED);
+        //not getImportJob(jobId): a call on this would skip its @Transactional, and the errors of the job are loaded lazily
+        return transactionTemplate.execute(status -> importJobRepository.findById(jobId).map(ImportService::toImportJobView).orElse(null));
+    }
+
+    @Transactional(readOnly = true)
+    public ImportJobView getImportJob(Long jobId) {
+        return importJobRepository.findById(jobId).map(ImportService::toImportJobView).orElse(null);
+    }
+
+    //earlierFailure is the error of this chunk from an earlier run, null for a chunk that is imported the first time
+    private void importChunk(Long jobId, long firstRow, List<ImportRow> rows, ImportChunkError earlierFailure) {
+        int chunkIndex = earlierFailure == null ? (int) ((firstRow - 1) / chunkSize) : earlierFailure.getChunkIndex();
+        long lastRow = firstRow + rows.size() - 1;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                writeChunk(jobId, rows);
+                if (earlierFailure == null) importJobRepository.recordCommittedChunk(jobId, rows.size());
+                else recordRetriedChunk(jobId, firstRow, rows.size());
+            });
+        } catch (RuntimeException e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Import {}: chunk {} (rows {}-{}) rolled back: {}", jobId, chunkIndex, firstRow, lastRow, message);
+            recordFailedChunk(jobId, new ImportChunkError(chunkIndex, firstRow, lastRow, truncate(message)), rows.size(), earlierFailure != null);
+        }
+    }
+
+    private void writeChunk(Long jobId, List<ImportRow> rows) {
+        Map<String, Long> departmentIds = new HashMap<>();
+        Map<String, Long> employeeIds = new HashMap<>();
+        List<ImportRow> relationships = new ArrayList<>();
+
+        int persisted = 0;
+        for (ImportRow row : rows) {
+            if (row.error() != null) throw new IllegalArgumentException(row.error());
+            switch (row.type()) {
+                case "department" -> {
+                    DepartmentEntity department = new DepartmentEntity();
+                    department.setTitle(required(row.name(), "name", row));
+                    entityManager.persist(department);
+                    rememberRef(jobId, row, ImportRefEntity.Kind.DEPARTMENT, department.getId(), departmentIds);
+                }
+                case "employee" -> {
+                    EmployeeEntity employee = EmployeeEntity.builder().name(required(row.name(), "name", row)).build();
+                    entityManager.persist(employee);
+                    rememberRef(jobId, row, ImportRefEntity.Kind.EMPLOYEE, employee.getId(), employeeIds);
+                }
+                case "manager", "worker", "freelancer" -> {
+                    required(row.department(), "department", row);
+                    required(row.employee(), "employee", row);
+                    relationships.add(row);
+                    continue;
+                }
+                default -> throw new IllegalArgumentException("Unknown row type '" + row.type() + "'");
+            }
+            //ids come from the pooled sequences at persist time, so the entities are not needed anymore after the flush
+            if (++persisted % flushInterval == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        resolveRefsOfEarlierChunks(jobId, relationships, departmentIds, employeeIds);
+        writeRelationships(relationships, departmentIds, employeeIds);
+    }
+
+    private void rememberRef(Long jobId, ImportRow row, ImportRefEntity.Kind kind, Long entityId, Map<String, Long> refs) {
+        String ref = required(row.ref(), "ref", row);
+        refs.put(ref, entityId);
+        //persist and not save -> the id is assigned, save() would first try to select it (merge)
+        entityManager.persist(new ImportRefEntity(new ImportRefId(jobId, ref), kind, entityId));
+    }
+
+    private void resolveRefsOfEarlierChunks(Long jobId, List<ImportRow> relationships,
+                                            Map<String, Long> departmentIds, Map<String, Long> employeeIds) {
+        Set<String> unknownRefs = new HashSet<>();
+        for (ImportRow row : relationships) {
+            if (!departmentIds.containsKey(row.department())) unknownRefs.add(row.department());
+            if (!employeeIds.containsKey(row.employee())) unknownRefs.add(row.employee());
+        }
+        if (unknownRefs.isEmpty()) return;
+
+        for (ImportRefEntity ref : importRefRepository.findByJobIdAndRefIn(jobId, unknownRefs)) {
+            Map<String, Long> refs = ref.getKind() == ImportRefEntity.Kind.DEPARTMENT ? departmentIds : employeeIds;
+            refs.put(ref.getId().getRef(), ref.getEntityId());
+        }
+        for (ImportRow row : relationships) {
+            if (!departmentIds.containsKey(row.department())) throw new IllegalArgumentException("Unknown department ref '" + row.department() + "'");
+            if (!employeeIds.containsKey(row.employee())) throw new IllegalArgumentException("Unknown employee ref '" + row.employee() + "'");
+        }
+    }
+
+    private void writeRelationships(List<ImportRow> relationships, Map<String, Long> departmentIds, Map<String, Long> employeeIds) {
+        //a later row of the chunk wins over an earlier one, like it would with one request per row
+        Map<Long, Long> managerByDepartment = new LinkedHashMap<>();
+        Map<Long, Long> workerDepartmentByEmployee = new LinkedHashMap<>();
+        Set<List<Long>> freelancers = new LinkedHashSet<>();
+        for (ImportRow row : relationships) {
+            Long departmentId = departmentIds.get(row.department());
+            Long employeeId = employeeIds.get(row.employee());
+            switch (row.type()) {
+                case "manager" -> managerByDepartment.put(departmentId, employeeId);
+                case "worker" -> workerDepartmentByEmployee.put(employeeId, departmentId);
+                default -> freelancers.add(List.of(employeeId, departmentId));
+            }
+        }
+
+        JdbcTemplate jdbc = jdbcTemplate.getJdbcTemplate();
+        if (!managerByDepartment.isEmpty()) {
+            //the version is incremented like hibernate would, a concurrent assignManagerToDepartment then fails its version check
+            jdbc.batchUpdate("update departments set department_manager = ?, version = version + 1 where id = ?",
+                    managerByDepartment.entrySet().stream().map(e -> new Object[]{e.getValue(), e.getKey()}).toList());
+        }
+        //membership changes increment the employee version, same as EmployeeRepository.lockForMembershipChange
+        Set<Long> changedEmployeeIds = new HashSet<>(workerDepartmentByEmployee.keySet());
+        freelancers.forEach(link -> changedEmployeeIds.add(link.get(0)));
+        if (!changedEmployeeIds.isEmpty()) {
+            jdbc.batchUpdate("update employees set version = version + 1 where id = ?",
+                    changedEmployeeIds.stream().sorted().map(employeeId -> new Object[]{employeeId}).toList());
+        }
+        //new roster_version for every department that gets or loses a member (DepartmentEntity.rosterVersion), before the
+        //delete below so the departments the workers leave are still found. after the employee rows, like every membership change
+        Set<Long> joinedDepartmentIds = new HashSet<>(workerDepartmentByEmployee.values());
+        freelancers.forEach(link -> joinedDepartmentIds.add(link.get(1)));
+        if (!workerDepartmentByEmployee.isEmpty()) {
+            jdbcTemplate.update("update departments set roster_version = roster_version + 1 where id in (:departmentIds) " +
+                            "or id in (select department_id from worker_department_mapping where employee_id in (:employeeIds))",
+                    Map.of("departmentIds", joinedDepartmentIds, "employeeIds", workerDepartmentByEmployee.keySet()));
+        } else if (!joinedDepartmentIds.isEmpty()) {
+            jdbcTemplate.update("update departments set roster_version = roster_version + 1 where id in (:departmentIds)",
+                    Map.of("departmentIds", joinedDepartmentIds));
+        }
+        if (!workerDepartmentByEmployee.isEmpty()) {
+            //an employee works in one department only, an existing row is replaced
+            jdbc.batchUpdate("delete from worker_department_mapping where employee_id = ?",
+                    workerDepartmentByEmployee.keySet().stream().map(employeeId -> new Object[]{employeeId}).toList());
+            jdbc.batchUpdate("insert into worker_department_mapping (employee_id, department_id) values (?, ?)",
+                    workerDepartmentByEmployee.entrySet().stream().map(e -> new Object[]{e.getKey(), e.getValue()}).toList());
+        }
+        if (!freelancers.isEmpty()) {
+            //skip the links that exist already, one query for the whole chunk
+            Set<Long> freelancerIds = new HashSet<>();
+            freelancers.forEach(link -> freelancerIds.add(link.get(0)));
+            jdbcTemplate.query("select employee_id, department_id from freelancer_department_mapping where employee_id in (:employeeIds)",
+                    Map.of("employeeIds", freelancerIds),
+                    (RowCallbackHandler) resultSet -> freelancers.remove(List.of(resultSet.getLong(1), resultSet.getLong(2))));
+            jdbc.batchUpdate("insert into freelancer_department_mapping (employee_id, department_id) values (?, ?)",
+                    freelancers.stream().map(link -> new Object[]{link.get(0), link.get(1)}).toList());
+        }
+    }
+
+    //runs inside the transaction of the chunk, after writeChunk cleared the persistence context
+    private void recordRetriedChunk(Long jobId, long firstRow, int rows) {
+        ImportJobEntity job = importJobRepository.findById(jobId).orElseThrow();
+        job.getErrors().removeIf(error -> error.getFirstRow() == firstRow);
+        job.setFailedRows(job.getFailedRows() - rows);
+        job.setFailedChunks(job.getFailedChunks() - 1);
+        job.setProcessedRows(job.getProcessedRows() + rows);
+        job.setCommittedChunks(job.getCommittedChunks() + 1);
+    }
+
+    //a chunk that failed again only gets its new error, it is counted once
+    private void recordFailedChunk(Long jobId, ImportChunkError error, int rows, boolean retried) {
+        transactionTemplate.executeWithoutResult(status -> {
+            ImportJobEntity job = importJobRepository.findById(jobId).orElseThrow();
+            if (retried) {
+                job.getErrors().removeIf(earlier -> earlier.getFirstRow() == error.getFirstRow());
+            } else {
+                job.setFailedRows(job.getFailedRows() + rows);
+                job.setFailedChunks(job.getFailedChunks() + 1);
+            }
+            job.getErrors().add(error);
+        });
+    }
+
+    private void setStatus(Long jobId, ImportJobEntity.Status status) {
+        transactionTemplate.executeWithoutResult(transaction ->
+                importJobRepository.findById(jobId).ifPresent(job -> job.setStatus(status)));
+    }
+
+    private record ResumePoint(ImportJobEntity.Format format, long doneRows, List<ImportChunkError> failedChunks) {
+    }
+
+    private static String required(String value, String field, ImportRow row) {
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing " + field + " in " + row.type() + " row");
+        return value;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_MESSAGE_LENGTH) return message;
+        return message.substring(0, MAX_ERROR_MESSAGE_LENGTH);
+    }
+
+    private static ImportJobView toImportJobView(ImportJobEntity job) {
+        List<ImportJobView.ChunkError> errors = job.getErrors().stream()
+                .limit(MAX_REPORTED_ERRORS)
+                .map(error -> new ImportJobView.ChunkError(error.getChunkIndex(), error.getFirstRow(), error.getLastRow(), error.getMessage()))
+                .toList();
+        return new ImportJobView(job.getId(), job.getFormat().name(), job.getStatus().name(),
+                job.getProcessedRows(), job.getFailedRows(), job.getCommittedChunks(), job.getFailedChunks(), errors);
+    }
+}
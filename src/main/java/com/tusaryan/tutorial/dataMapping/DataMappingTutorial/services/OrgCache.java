@@ -0,0 +1,222 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//read cache in front of DepartmentService and EmployeeService. size, ttl and eviction policy come from spring.cache.caffeine.spec.
+//three caches:
+// departments        -> departmentId -> DepartmentView
+// employees          -> employeeId -> EmployeeView
+// managerDepartments -> employeeId -> id of the department this employee manages (null = none), the manager -> department index
+//the mutation methods of DepartmentService tell this class exactly which entries they made stale.
+//cache misses are coalesced (SingleFlight), so many concurrent requests for the same cold key cause one load.
+@Component
+public class OrgCache {
+
+    public static final String DEPARTMENTS = "departments";
+    public static final String EMPLOYEES = "employees";
+    public static final String MANAGER_DEPARTMENTS = "managerDepartments";
+
+    private final Cache departments;
+
+    private final Cache employees;
+
+    private final Cache managerDepartments;
+
+    private final SingleFlight<Long, DepartmentView> departmentLoads = new SingleFlight<>();
+
+    private final SingleFlight<Long, EmployeeView> employeeLoads = new SingleFlight<>();
+
+    private final SingleFlight<Long, DepartmentView> managerLoads = new SingleFlight<>();
+
+    //evictions counted per key, one counter set per cache. a load that raced with an eviction of its key must not put
+    //its (possibly old) value back, loads of other keys are not affected by that eviction.
+    private final Invalidations departmentInvalidations = new Invalidations();
+
+    private final Invalidations employeeInvalidations = new Invalidations();
+
+    private final Invalidations managerInvalidations = new Invalidations();
+
+    public OrgCache(CacheManager cacheManager) {
+        this.departments = Objects.requireNonNull(cacheManager.getCache(DEPARTMENTS));
+        this.employees = Objects.requireNonNull(cacheManager.getCache(EMPLOYEES));
+        this.managerDepartments = Objects.requireNonNull(cacheManager.getCache(MANAGER_DEPARTMENTS));
+    }
+
+    public DepartmentView department(Long departmentId, Supplier<DepartmentView> loader) {
+        return get(departments, departmentInvalidations, departmentLoads, departmentId, loader);
+    }
+
+    public EmployeeView employee(Long employeeId, Supplier<EmployeeView> loader) {
+        return get(employees, employeeInvalidations, employeeLoads, employeeId, loader);
+    }
+
+    //goes through the manager index first. on a miss the department is loaded by its manager and both caches are filled.
+    public DepartmentView departmentOfManager(Long employeeId,
+                                              Supplier<DepartmentView> loadByManager,
+                                              Function<Long, DepartmentView> departmentById) {
+        Cache.ValueWrapper indexed = managerDepartments.get(employeeId);
+        if (indexed != null) {
+            Long departmentId = (Long) indexed.get();
+            return departmentId == null ? null : departmentById.apply(departmentId);
+        }
+        //the id of the department is only known after the load, so for the departments cache any department eviction
+        //during the load counts (the manager lookup is rare, the department itself is cached by id anyway)
+        return managerLoads.load(employeeId, () -> {
+            long managerBefore = managerInvalidations.of(employeeId);
+            long departmentsBefore = departmentInvalidations.total();
+            DepartmentView department = loadByManager.get();
+            putIfNotInvalidated(managerDepartments, employeeId, department == null ? null : department.id(),
+                    () -> managerInvalidations.of(employeeId) == managerBefore);
+            if (department != null) {
+                putIfNotInvalidated(departments, department.id(), department, () -> departmentInvalidations.total() == departmentsBefore);
+            }
+            return department;
+        });
+    }
+
+    //the cached view only, never loads. null when it is not cached
+    public DepartmentView cachedDepartment(Long departmentId) {
+        Cache.ValueWrapper cached = departments.get(departmentId);
+        return cached == null ? null : (DepartmentView) cached.get();
+    }
+
+    //for freshly created entities. inside a transaction the value is only put once it is committed.
+    public void putDepartment(DepartmentView department) {
+        afterCommit(() -> departments.put(department.id(), department));
+    }
+
+    public void putEmployee(EmployeeView employee) {
+        afterCommit(() -> employees.put(employee.id(), employee));
+    }
+
+    public void evictDepartments(Long... departmentIds) {
+        evict(departments, departmentInvalidations, departmentLoads, departmentIds);
+    }
+
+    public void evictManagers(Long... employeeIds) {
+        evict(managerDepartments, managerInvalidations, managerLoads, employeeIds);
+    }
+
+    public void evictEmployees(Long... employeeIds) {
+        evict(employees, employeeInvalidations, employeeLoads, employeeIds);
+    }
+
+    //warm start (OrgSnapshotService): the department and its manager index entry, before the application takes traffic
+    public void preloadDepartment(DepartmentView department) {
+        departments.put(department.id(), department);
+        if (department.manager() != null) managerDepartments.put(department.manager().id(), department.id());
+    }
+
+    public void clear() {
+        departmentInvalidations.incrementAll();
+        employeeInvalidations.incrementAll();
+        managerInvalidations.incrementAll();
+        departmentLoads.forgetAll();
+        employeeLoads.forgetAll();
+        managerLoads.forgetAll();
+        departments.clear();
+        employees.clear();
+        managerDepartments.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Cache cache, Invalidations invalidations, SingleFlight<Long, T> loads, Long key, Supplier<T> loader) {
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null) return (T) cached.get();
+
+        //only the caller that starts the load puts the value, the ones that joined just share it
+        return loads.load(key, () -> {
+            long invalidationsBefore = invalidations.of(key);
+            T value = loader.get();
+            putIfNotInvalidated(cache, key, value, () -> invalidations.of(key) == invalidationsBefore);
+            return value;
+        });
+    }
+
+    private static void putIfNotInvalidated(Cache cache, Long key, Object value, BooleanSupplier unchanged) {
+        if (!unchanged.getAsBoolean()) return;
+        cache.put(key, value);
+        //an eviction could have happened between the check and the put, in that case take the value out again
+        if (!unchanged.getAsBoolean()) cache.evict(key);
+    }
+
+    //evicts right away and once more after the commit. a reader that loaded the old rows in between
+    //(before our transaction was visible) can't leave them in the cache.
+    private static void evict(Cache cache, Invalidations invalidations, SingleFlight<Long, ?> loads, Long... keys) {
+        afterCommitAndNow(() -> {
+            for (Long key : keys) {
+                if (key == null) continue;
+                invalidations.increment(key);
+                loads.forget(key);
+                cache.evict(key);
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static void afterCommitAndNow(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) afterCommit(action);
+    }
+
+    //eviction counter per key. the keys are hashed into a fixed number of slots, so the memory does not grow with the
+    //number of departments/employees ever evicted. two keys sharing a slot only means that a load of one of them is
+    //not cached after an eviction of the other (one extra miss later), never that an old value is kept.
+    static final class Invalidations {
+
+        private static final int SLOTS = 4096;
+
+        private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+        //every eviction of any key
+        private final AtomicLong total = new AtomicLong();
+
+        long of(Long key) {
+            return slots.get(slot(key));
+        }
+
+        long total() {
+            return total.get();
+        }
+
+        void increment(Long key) {
+            slots.incrementAndGet(slot(key));
+            total.incrementAndGet();
+        }
+
+        void incrementAll() {
+            for (int i = 0; i < SLOTS; i++) slots.incrementAndGet(i);
+            total.incrementAndGet();
+        }
+
+        private static int slot(Long key) {
+            int hash = key.hashCode();
+            return (hash ^ (hash >>> 16)) & (SLOTS - 1);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+//the department/employee graph as primitive arrays, and its binary file format (big endian, as written by DataOutputStream):
+// header      -> magic, format version, createdAt (epoch millis)
+// departments -> count, ids[], versions[], rosterVersions[], managerIds[] (-1 = none), titles (length + UTF-8 each, length -1 = null)
+// employees   -> count, ids[], versions[], names (length + UTF-8 each)
+// workers     -> count, employeeIds[], departmentIds[]
+// freelancers -> count, employeeIds[], departmentIds[]
+//departments and employees are sorted by id (binary search instead of a map), the edges by department and then employee,
+//so the roster of a department is one run of the edge arrays. see OrgSnapshotService.
+record OrgSnapshot(long createdAt,
+                   long[] departmentIds, long[] departmentVersions, long[] departmentRosterVersions, long[] managerIds, String[] titles,
+                   long[] employeeIds, long[] employeeVersions, String[] names,
+                   long[] workerEmployeeIds, long[] workerDepartmentIds,
+                   long[] freelancerEmployeeIds, long[] freelancerDepartmentIds) {
+
+    static final long NO_MANAGER = -1;
+
+    private static final int MAGIC = 0x4F524753; //"ORGS"
+    private static final int FORMAT_VERSION = 2;
+
+    //written next to the target and moved over it, a reader (or a crash in between) never sees half a file
+    void writeTo(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(createdAt);
+                out.writeInt(departmentIds.length);
+                writeLongs(out, departmentIds);
+                writeLongs(out, departmentVersions);
+                writeLongs(out, departmentRosterVersions);
+                writeLongs(out, managerIds);
+                writeStrings(out, titles);
+                out.writeInt(employeeIds.length);
+                writeLongs(out, employeeIds);
+                writeLongs(out, employeeVersions);
+                writeStrings(out, names);
+                out.writeInt(workerEmployeeIds.length);
+                writeLongs(out, workerEmployeeIds);
+                writeLongs(out, workerDepartmentIds);
+                out.writeInt(freelancerEmployeeIds.length);
+                writeLongs(out, freelancerEmployeeIds);
+                writeLongs(out, freelancerDepartmentIds);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    //the file is memory mapped, the OS pages it in while the arrays are filled (no read() calls and no copy into a heap buffer first)
+    static OrgSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) throw new IOException(path + " is not an org snapshot");
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) throw new IOException(path + " has format version " + formatVersion + ", expected " + FORMAT_VERSION);
+        long createdAt = buffer.getLong();
+
+        int departments = buffer.getInt();
+        long[] departmentIds = readLongs(buffer, departments);
+        long[] departmentVersions = readLongs(buffer, departments);
+        long[] departmentRosterVersions = readLongs(buffer, departments);
+        long[] managerIds = readLongs(buffer, departments);
+        String[] titles = readStrings(buffer, departments);
+        int employees = buffer.getInt();
+        long[] employeeIds = readLongs(buffer, employees);
+        long[] employeeVersions = readLongs(buffer, employees);
+        String[] names = readStrings(buffer, employees);
+        int workers = buffer.getInt();
+        long[] workerEmployeeIds = readLongs(buffer, workers);
+        long[] workerDepartmentIds = readLongs(buffer, workers);
+        int freelancers = buffer.getInt();
+        long[] freelancerEmployeeIds = readLongs(buffer, freelancers);
+        long[] freelancerDepartmentIds = readLongs(buffer, freelancers);
+
+        return new OrgSnapshot(createdAt, departmentIds, departmentVersions, departmentRosterVersions, managerIds, titles,
+                employeeIds, employeeVersions, names, workerEmployeeIds, workerDepartmentIds,
+                freelancerEmployeeIds, freelancerDepartmentIds);
+    }
+
+    int edges() {
+        return workerEmployeeIds.length + freelancerEmployeeIds.length;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        for (long value : values) out.writeLong(value);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        for (String value : values) {
+            if (value == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static long[] readLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length < 0) continue;
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,365 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs.ReadWriteRoutingDataSource;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//optional (app.snapshot.enabled) warm start. every app.snapshot.interval (and once more on shutdown) the department/employee
+//graph is written to app.snapshot.path (see OrgSnapshot). on startup, before the web server takes requests, the file is
+//memory mapped and every department is put into OrgCache, so the first requests after a restart don't all go to the database.
+//the snapshot can be old, so it is reconciled before it is used: the current versions of all departments and employees are
+//read (two narrow scans, no rosters) and the departments whose rows, rosters or members changed since then are evicted again.
+//every membership change increments the roster_version of the departments involved, every change of an employee
+//(name, membership) increments its version, so the two versions are enough to find the changed rosters.
+//the schema comes from the migrations and survives a restart (ddl-auto=validate), so the versions in the file can still match.
+@Component
+public class OrgSnapshotService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OrgSnapshotService.class);
+
+    //employees whose current memberships are looked up with one IN query
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+
+    private final DepartmentRepository departmentRepository;
+
+    private final EmployeeRepository employeeRepository;
+
+    private final OrgCache orgCache;
+
+    private final TransactionTemplate primaryReadTransaction;
+
+    private final boolean enabled;
+
+    private final Path path;
+
+    private final Duration interval;
+
+    private final boolean writeOnShutdown;
+
+    private ScheduledExecutorService writer;
+
+    private volatile boolean running;
+
+    public OrgSnapshotService(DepartmentRepository departmentRepository,
+                              EmployeeRepository employeeRepository,
+                              OrgCache orgCache,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.snapshot.enabled:false}") boolean enabled,
+                              @Value("${app.snapshot.path:${java.io.tmpdir}/org-snapshot.bin}") Path path,
+                              @Value("${app.snapshot.interval:5m}") Duration interval,
+                              @Value("${app.snapshot.write-on-shutdown:true}") boolean writeOnShutdown) {
+        this.departmentRepository = departmentRepository;
+        this.employeeRepository = employeeRepository;
+        this.orgCache = orgCache;
+        this.enabled = enabled;
+        this.path = path;
+        this.interval = interval;
+        this.writeOnShutdown = writeOnShutdown;
+        //one transaction for all reads of a snapshot -> on MySQL (REPEATABLE READ) they all see the same consistent state.
+        //on the primary, the snapshot fills the caches
+        this.primaryReadTransaction = ReadWriteRoutingDataSource.primaryReadTransaction(transactionManager);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        warmUp();
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> Thread.ofPlatform().name("org-snapshot-writer").daemon().unstarted(runnable));
+        writer.scheduleWithFixedDelay(this::writeSnapshotQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) return;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        if (writeOnShutdown) writeSnapshotQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //started before the web server and the assignment pipeline, stopped after them -> the last snapshot has all drained writes
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    //reads the whole graph and replaces the file. returns the number of departments written
+    public int writeSnapshot() throws IOException {
+        long startedAt = System.nanoTime();
+        OrgSnapshot snapshot = primaryReadTransaction.execute(status -> readGraph());
+        snapshot.writeTo(path);
+        log.info("Org snapshot written to {}: {} departments, {} employees, {} edges, {} bytes in {} ms", path,
+                snapshot.departmentIds().length, snapshot.employeeIds().length, snapshot.edges(), Files.size(path), millisSince(startedAt));
+        return snapshot.departmentIds().length;
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            //the old file stays in place, the next run tries again
+            log.warn("Could not write org snapshot to {}", path, e);
+        }
+    }
+
+    //a missing or broken snapshot is not an error, the application starts with cold caches like without it
+    private void warmUp() {
+        long startedAt = System.nanoTime();
+        OrgSnapshot snapshot;
+        try {
+            snapshot = OrgSnapshot.read(path);
+        } catch (NoSuchFileException e) {
+            log.info("No org snapshot at {}, starting with cold caches", path);
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read org snapshot {}, starting with cold caches", path, e);
+            return;
+        }
+        long mappedAt = System.nanoTime();
+
+        List<DepartmentView> departments = toDepartmentViews(snapshot);
+        departments.forEach(orgCache::preloadDepartment);
+        long preloadedAt = System.nanoTime();
+
+        int stale;
+        try {
+            stale = primaryReadTransaction.execute(status -> reconcile(snapshot));
+        } catch (RuntimeException e) {
+            //without the reconciliation the preloaded departments can't be trusted
+            orgCache.clear();
+            log.warn("Could not reconcile org snapshot {} with the database, starting with cold caches", path, e);
+            return;
+        }
+        log.info("Warm start from org snapshot of {} ms ago: read {} departments, {} employees, {} edges in {} ms, preloaded in {} ms, "
+                        + "reconciled in {} ms ({} stale departments evicted), {} ms in total",
+                System.currentTimeMillis() - snapshot.createdAt(), snapshot.departmentIds().length, snapshot.employeeIds().length,
+                snapshot.edges(), (mappedAt - startedAt) / 1_000_000, (preloadedAt - mappedAt) / 1_000_000,
+                millisSince(preloadedAt), stale, millisSince(startedAt));
+    }
+
+    private OrgSnapshot readGraph() {
+        LongArray departmentIds = new LongArray();
+        LongArray departmentVersions = new LongArray();
+        LongArray departmentRosterVersions = new LongArray();
+        LongArray managerIds = new LongArray();
+        List<String> titles = new ArrayList<>();
+        try (var departments = departmentRepository.streamAllHeaders()) {
+            departments.forEach(department -> {
+                departmentIds.add(department.id());
+                departmentVersions.add(version(department.version()));
+                departmentRosterVersions.add(department.rosterVersion());
+                managerIds.add(department.managerId() == null ? OrgSnapshot.NO_MANAGER : department.managerId());
+                titles.add(department.title());
+            });
+        }
+
+        LongArray employeeIds = new LongArray();
+        LongArray employeeVersions = new LongArray();
+        List<String> names = new ArrayList<>();
+        try (var employees = employeeRepository.streamAllRows()) {
+            employees.forEach(employee -> {
+                employeeIds.add(employee.getId());
+                employeeVersions.add(version(employee.getVersion()));
+                names.add(employee.getName());
+            });
+        }
+
+        LongArray workerEmployeeIds = new LongArray();
+        LongArray workerDepartmentIds = new LongArray();
+        try (var workers = employeeRepository.streamWorkerMembershipsByDepartment()) {
+            workers.forEach(row -> {
+                workerEmployeeIds.add(row.getEmployeeId());
+                workerDepartmentIds.add(row.getDepartmentId());
+            });
+        }
+
+        LongArray freelancerEmployeeIds = new LongArray();
+        LongArray freelancerDepartmentIds = new LongArray();
+        try (var freelancers = employeeRepository.streamFreelancerMembershipsByDepartment()) {
+            freelancers.forEach(row -> {
+                freelancerEmployeeIds.add(row.getEmployeeId());
+                freelancerDepartmentIds.add(row.getDepartmentId());
+            });
+        }
+
+        return new OrgSnapshot(System.currentTimeMillis(),
+                departmentIds.toArray(), departmentVersions.toArray(), departmentRosterVersions.toArray(), managerIds.toArray(), titles.toArray(String[]::new),
+                employeeIds.toArray(), employeeVersions.toArray(), names.toArray(String[]::new),
+                workerEmployeeIds.toArray(), workerDepartmentIds.toArray(),
+                freelancerEmployeeIds.toArray(), freelancerDepartmentIds.toArray());
+    }
+
+    //departments and edges are both sorted by department id, so one pass over each builds all rosters (in employee id
+    //order, like the roster queries)
+    private static List<DepartmentView> toDepartmentViews(OrgSnapshot snapshot) {
+        List<DepartmentView> views = new ArrayList<>(snapshot.departmentIds().length);
+        int worker = 0;
+        int freelancer = 0;
+        for (int i = 0; i < snapshot.departmentIds().length; i++) {
+            long departmentId = snapshot.departmentIds()[i];
+            while (worker < snapshot.workerDepartmentIds().length && snapshot.workerDepartmentIds()[worker] < departmentId) worker++;
+            int firstWorker = worker;
+            while (worker < snapshot.workerDepartmentIds().length && snapshot.workerDepartmentIds()[worker] == departmentId) worker++;
+            while (freelancer < snapshot.freelancerDepartmentIds().length && snapshot.freelancerDepartmentIds()[freelancer] < departmentId) freelancer++;
+            int firstFreelancer = freelancer;
+            while (freelancer < snapshot.freelancerDepartmentIds().length && snapshot.freelancerDepartmentIds()[freelancer] == departmentId) freelancer++;
+
+            long managerId = snapshot.managerIds()[i];
+            EmployeeView manager = managerId == OrgSnapshot.NO_MANAGER ? null : employee(snapshot, managerId);
+            views.add(new DepartmentView(departmentId, snapshot.titles()[i], snapshot.departmentVersions()[i],
+                    snapshot.departmentRosterVersions()[i], manager,
+                    employees(snapshot, snapshot.workerEmployeeIds(), firstWorker, worker),
+                    employees(snapshot, snapshot.freelancerEmployeeIds(), firstFreelancer, freelancer)));
+        }
+        return views;
+    }
+
+    private static List<EmployeeView> employees(OrgSnapshot snapshot, long[] employeeIds, int from, int to) {
+        List<EmployeeView> employees = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) employees.add(employee(snapshot, employeeIds[i]));
+        return employees;
+    }
+
+    private static EmployeeView employee(OrgSnapshot snapshot, long employeeId) {
+        int index = Arrays.binarySearch(snapshot.employeeIds(), employeeId);
+        return new EmployeeView(employeeId, index < 0 ? null : snapshot.names()[index]);
+    }
+
+    //evicts every preloaded department that is not the same in the database anymore:
+    // - its own row changed (version: title, manager; roster_version: members) or it is gone
+    // - one of its snapshot members changed or is gone (moved away, or any other membership change of that employee)
+    // - a changed or new employee is one of its members now
+    //returns the number of evicted departments
+    private int reconcile(OrgSnapshot snapshot) {
+        Set<Long> staleDepartments = new HashSet<>();
+        Set<Long> staleManagers = new HashSet<>();
+
+        boolean[] departmentSeen = new boolean[snapshot.departmentIds().length];
+        try (var departments = departmentRepository.streamAllHeaders()) {
+            departments.forEach(department -> {
+                int index = Arrays.binarySearch(snapshot.departmentIds(), department.id());
+                //a department that is newer than the snapshot was not preloaded
+                if (index < 0) return;
+                departmentSeen[index] = true;
+                if (version(department.version()) != snapshot.departmentVersions()[index]
+                        || department.rosterVersion() != snapshot.departmentRosterVersions()[index]) {
+                    staleDepartments.add(department.id());
+                    if (department.managerId() != null) staleManagers.add(department.managerId());
+                }
+            });
+        }
+        for (int i = 0; i < departmentSeen.length; i++) {
+            if (!departmentSeen[i]) staleDepartments.add(snapshot.departmentIds()[i]);
+        }
+        for (int i = 0; i < snapshot.departmentIds().length; i++) {
+            if (staleDepartments.contains(snapshot.departmentIds()[i]) && snapshot.managerIds()[i] != OrgSnapshot.NO_MANAGER) {
+                staleManagers.add(snapshot.managerIds()[i]);
+            }
+        }
+
+        Set<Long> changedEmployees = new HashSet<>();
+        boolean[] employeeSeen = new boolean[snapshot.employeeIds().length];
+        try (var employees = employeeRepository.streamVersions()) {
+            employees.forEach(employee -> {
+                int index = Arrays.binarySearch(snapshot.employeeIds(), employee.getId());
+                if (index >= 0) employeeSeen[index] = true;
+                if (index < 0 || version(employee.getVersion()) != snapshot.employeeVersions()[index]) changedEmployees.add(employee.getId());
+            });
+        }
+        for (int i = 0; i < employeeSeen.length; i++) {
+            if (!employeeSeen[i]) changedEmployees.add(snapshot.employeeIds()[i]);
+        }
+
+        if (!changedEmployees.isEmpty()) {
+            //where they were members when the snapshot was taken ...
+            addDepartmentsOf(changedEmployees, snapshot.workerEmployeeIds(), snapshot.workerDepartmentIds(), staleDepartments);
+            addDepartmentsOf(changedEmployees, snapshot.freelancerEmployeeIds(), snapshot.freelancerDepartmentIds(), staleDepartments);
+            //... and where they are members now
+            List<Long> batch = new ArrayList<>(RECONCILE_BATCH_SIZE);
+            for (Long employeeId : changedEmployees) {
+                batch.add(employeeId);
+                if (batch.size() == RECONCILE_BATCH_SIZE) {
+                    addCurrentDepartments(batch, staleDepartments);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) addCurrentDepartments(batch, staleDepartments);
+        }
+
+        orgCache.evictDepartments(staleDepartments.toArray(Long[]::new));
+        orgCache.evictManagers(staleManagers.toArray(Long[]::new));
+        orgCache.evictEmployees(changedEmployees.toArray(Long[]::new));
+        return staleDepartments.size();
+    }
+
+    private static void addDepartmentsOf(Set<Long> employees, long[] employeeIds, long[] departmentIds, Set<Long> departments) {
+        for (int i = 0; i < employeeIds.length; i++) {
+            if (employees.contains(employeeIds[i])) departments.add(departmentIds[i]);
+        }
+    }
+
+    private void addCurrentDepartments(List<Long> employeeIds, Set<Long> departments) {
+        employeeRepository.findWorkerMemberships(employeeIds).forEach(row -> departments.add(row.getDepartmentId()));
+        employeeRepository.findFreelancerMemberships(employeeIds).forEach(row -> departments.add(row.getDepartmentId()));
+    }
+
+    //rows written before the version columns existed have none
+    private static long version(Long version) {
+        return version == null ? -1 : version;
+    }
+
+    private static long millisSince(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    //growable long[] -> no boxed Long per id while the graph is read
+    private static final class LongArray {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+//read-write transaction that is run again when it lost a race: a failed version check (@Version, optimistic locking),
+//a lock wait timeout or a deadlock. all of them are ConcurrencyFailureException after spring's exception translation.
+//every attempt is a new transaction and reads the current rows again. after maxAttempts the exception goes to the caller.
+//the retried code must not have side effects outside the transaction that hurt when they happen once per attempt:
+//OrgCache evicts right away and again after commit (an eviction can be repeated, a failed attempt only costs a cache miss),
+//HeadcountCounters applies its deltas after commit only (a rolled back attempt just ends its pending change).
+@Component
+public class RetryingTransaction {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryingTransaction.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    public RetryingTransaction(PlatformTransactionManager transactionManager,
+                               @Value("${app.concurrency.max-attempts:5}") int maxAttempts,
+                               @Value("${app.concurrency.retry-backoff:5ms}") Duration backoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoff.toMillis();
+    }
+
+    public <T> T execute(TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) throw e;
+                log.debug("Attempt {} of {} lost a concurrent update, retrying: {}", attempt, maxAttempts, e.getMessage());
+                backOff(attempt);
+            }
+        }
+    }
+
+    //random part so that the writers that collided don't collide again on the next attempt
+    private void backOff(int attempt) {
+        if (backoffMillis <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+//optional (app.response-cache.enabled) cache of already serialized GET /departments/{id} responses, JSON only.
+//an entry is only used while its ETag is still the current one. the ETag changes with every mutation of the department
+//(version and roster_version of its row, both in the database), so mutations, also those of other instances,
+//make old entries unusable without touching this cache, and the next serialization replaces them. bounded by the total size of the bytes.
+@Component
+public class SerializedResponseCache {
+
+    private final boolean enabled;
+
+    private final Cache<Long, Entry> departments;
+
+    public SerializedResponseCache(@Value("${app.response-cache.enabled:false}") boolean enabled,
+                                   @Value("${app.response-cache.max-size:64MB}") DataSize maxSize) {
+        this.enabled = enabled;
+        this.departments = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long departmentId, Entry entry) -> entry.bytes().length)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //null when nothing is cached for this ETag
+    public byte[] department(Long departmentId, String etag) {
+        if (!enabled) return null;
+        Entry entry = departments.getIfPresent(departmentId);
+        return entry != null && entry.etag().equals(etag) ? entry.bytes() : null;
+    }
+
+    public void putDepartment(Long departmentId, String etag, byte[] bytes) {
+        if (enabled) departments.put(departmentId, new Entry(etag, bytes));
+    }
+
+    private record Entry(String etag, byte[] bytes) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+//the batch version of DepartmentService.assignWorkerToDepartment, with a fixed number of statements per batch no matter
+//how many employees it moves. used by PUT /departments/{id}/workers and by the group commit of AssignmentPipeline.
+//earlier the batch endpoint set employee.setWorkerDepartment(department) and let dirty checking flush it, which is an
+//update + insert of worker_department_mapping per employee (the @JoinTable of a @ManyToOne is not batched).
+//now the mapping rows are written like the single assignment does it, delete + insert, but as two JDBC batches.
+@Component
+public class WorkerAssignmentWriter {
+
+    private final DepartmentRepository departmentRepository;
+
+    private final EmployeeRepository employeeRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final OrgCache orgCache;
+
+    private final HeadcountCounters headcountCounters;
+
+    private final EmployeeNameIndex employeeNameIndex;
+
+    public WorkerAssignmentWriter(DepartmentRepository departmentRepository, EmployeeRepository employeeRepository,
+                                  JdbcTemplate jdbcTemplate, OrgCache orgCache, HeadcountCounters headcountCounters,
+                                  EmployeeNameIndex employeeNameIndex) {
+        this.departmentRepository = departmentRepository;
+        this.employeeRepository = employeeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.orgCache = orgCache;
+        this.headcountCounters = headcountCounters;
+        this.employeeNameIndex = employeeNameIndex;
+    }
+
+    //employee id -> the department it should work in. has to run inside the caller's transaction (the employee rows stay
+    //locked until its commit). the ack of an employee is null when the employee or its department does not exist.
+    public Map<Long, MembershipAck> write(Map<Long, Long> departmentOfEmployee) {
+        if (departmentOfEmployee.isEmpty()) return Map.of();
+        //locked in id order, two batches with the same employees can't deadlock
+        Set<Long> employeeIds = new TreeSet<>(departmentOfEmployee.keySet());
+        Set<Long> departmentIds = new HashSet<>(departmentOfEmployee.values());
+
+        Set<Long> existingDepartments = new HashSet<>(departmentRepository.findExistingIds(departmentIds));
+        employeeRepository.lockForMembershipChange(employeeIds);
+        Set<Long> existingEmployees = new HashSet<>(employeeRepository.findExistingIds(employeeIds));
+        Map<Long, Long> currentDepartments = new HashMap<>();
+        employeeRepository.findWorkerMemberships(employeeIds)
+                .forEach(row -> currentDepartments.put(row.getEmployeeId(), row.getDepartmentId()));
+
+        Map<Long, MembershipAck> acks = new HashMap<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        Map<Long, Long> headcountDeltas = new HashMap<>();
+        departmentOfEmployee.forEach((employeeId, departmentId) -> {
+            if (!existingDepartments.contains(departmentId) || !existingEmployees.contains(employeeId)) {
+                acks.put(employeeId, null);
+                return;
+            }
+            Long currentDepartmentId = currentDepartments.get(employeeId);
+            if (departmentId.equals(currentDepartmentId)) {
+                acks.put(employeeId, new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, false));
+                return;
+            }
+            //an employee works in only one department, so moving an employee is delete + insert of that single row
+            if (currentDepartmentId != null) {
+                deletes.add(new Object[]{employeeId});
+                headcountDeltas.merge(currentDepartmentId, -1L, Long::sum);
+            }
+            inserts.add(new Object[]{employeeId, departmentId});
+            employeeNameIndex.workerAssigned(employeeId, departmentId);
+            headcountDeltas.merge(departmentId, 1L, Long::sum);
+            acks.put(employeeId, new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, true));
+        });
+
+        if (!deletes.isEmpty()) jdbcTemplate.batchUpdate("delete from worker_department_mapping where employee_id = ?", deletes);
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into worker_department_mapping (employee_id, department_id) values (?, ?)", inserts);
+        }
+        //both rosters of every moved employee changed
+        if (!headcountDeltas.isEmpty()) departmentRepository.incrementRosterVersions(headcountDeltas.keySet());
+        orgCache.evictDepartments(headcountDeltas.keySet().toArray(Long[]::new));
+        headcountDeltas.forEach(headcountCounters::workersChanged);
+        return acks;
+    }
+}
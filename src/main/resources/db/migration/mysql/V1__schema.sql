@@ -0,0 +1,88 @@
+-- baseline schema, what ddl-auto=create generated from the entity mappings plus the indexes the queries rely on.
+-- hibernate only validates it (spring.jpa.hibernate.ddl-auto=validate), changes go into a new V<n>__*.sql script.
+-- the h2 version for tests and benchmarks is in src/test/resources/db/migration/h2.
+
+-- MySQL has no sequences, hibernate emulates each one with a one row table (pooled, allocationSize of the entity)
+create table department_seq (next_val bigint) engine=InnoDB;
+insert into department_seq values (1);
+create table employee_seq (next_val bigint) engine=InnoDB;
+insert into employee_seq values (1);
+create table import_job_seq (next_val bigint) engine=InnoDB;
+insert into import_job_seq values (1);
+
+-- the name search compares and sorts with this collation (case and accent insensitive, no pad),
+-- EmployeeNameIndex folds names the same way
+create table employees (
+    id bigint not null,
+    name varchar(255) collate utf8mb4_0900_ai_ci not null,
+    version bigint,
+    primary key (id)
+) engine=InnoDB default charset=utf8mb4 collate=utf8mb4_0900_ai_ci;
+
+-- prefix range scan of the name search, in (name, id) order
+create index idx_employees_name on employees (name, id);
+
+-- version: title and manager, roster_version: workers and freelancers (see DepartmentEntity)
+create table departments (
+    id bigint not null,
+    title varchar(255) not null,
+    version bigint,
+    roster_version bigint not null default 0,
+    department_manager bigint,
+    primary key (id),
+    constraint uk_departments_manager unique (department_manager),
+    constraint fk_departments_manager foreign key (department_manager) references employees (id)
+) engine=InnoDB default charset=utf8mb4 collate=utf8mb4_0900_ai_ci;
+
+-- an employee works in at most one department
+create table worker_department_mapping (
+    employee_id bigint not null,
+    department_id bigint not null,
+    primary key (employee_id),
+    constraint fk_worker_mapping_employee foreign key (employee_id) references employees (id),
+    constraint fk_worker_mapping_department foreign key (department_id) references departments (id)
+) engine=InnoDB;
+
+-- roster of a department and the department filter of the name search, in employee id order
+create index idx_worker_mapping_department on worker_department_mapping (department_id, employee_id);
+
+create table freelancer_department_mapping (
+    employee_id bigint not null,
+    department_id bigint not null,
+    primary key (employee_id, department_id),
+    constraint fk_freelancer_mapping_employee foreign key (employee_id) references employees (id),
+    constraint fk_freelancer_mapping_department foreign key (department_id) references departments (id)
+) engine=InnoDB;
+
+-- the primary key starts with employee_id, lookups by department need their own index
+create index idx_freelancer_mapping_department on freelancer_department_mapping (department_id, employee_id);
+
+create table import_jobs (
+    id bigint not null,
+    format enum ('CSV','NDJSON') not null,
+    status enum ('CREATED','RUNNING','COMPLETED','INTERRUPTED') not null,
+    processed_rows bigint not null,
+    failed_rows bigint not null,
+    committed_chunks integer not null,
+    failed_chunks integer not null,
+    primary key (id)
+) engine=InnoDB default charset=utf8mb4 collate=utf8mb4_0900_ai_ci;
+
+create table import_job_errors (
+    import_job_id bigint not null,
+    chunk_index integer not null,
+    first_row bigint not null,
+    last_row bigint not null,
+    message varchar(1000),
+    constraint fk_import_job_errors_job foreign key (import_job_id) references import_jobs (id)
+) engine=InnoDB default charset=utf8mb4 collate=utf8mb4_0900_ai_ci;
+
+-- ref -> id of the department/employee created by an import job, the rows of a job refer to each other by ref.
+-- refs are compared exactly like in the import file ("d1" and "D1" are two refs)
+create table import_refs (
+    job_id bigint not null,
+    ref varchar(255) collate utf8mb4_bin not null,
+    kind enum ('DEPARTMENT','EMPLOYEE') not null,
+    entity_id bigint not null,
+    primary key (job_id, ref)
+) engine=InnoDB default charset=utf8mb4 collate=utf8mb4_0900_ai_ci;
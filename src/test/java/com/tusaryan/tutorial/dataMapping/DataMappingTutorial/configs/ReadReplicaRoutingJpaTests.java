@@ -0,0 +1,120 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//the whole stack wired by ReadReplicaRoutingConfig: JpaTransactionManager, LazyConnectionDataSourceProxy and the routing.
+//the "replica" is a second H2 database with a stale copy of the rows, so it is visible which database a read went to.
+@SpringBootTest(properties = {
+        "app.datasource.routing.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "app.datasource.replicas[0].url=jdbc:h2:mem:routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "app.datasource.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingJpaTests {
+
+    private static final long STALE_VERSION = 99;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final JdbcTemplate replica = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+
+    private DepartmentEntity department;
+    private EmployeeEntity employee;
+
+    @BeforeEach
+    void setUp() {
+        replica.execute("create table if not exists departments (id bigint primary key, title varchar(255), version bigint, roster_version bigint, department_manager bigint)");
+        replica.execute("create table if not exists employees (id bigint primary key, name varchar(255), version bigint)");
+        replica.execute("create table if not exists worker_department_mapping (employee_id bigint primary key, department_id bigint)");
+
+        department = new DepartmentEntity();
+        department.setTitle("Routed");
+        department = departmentRepository.save(department);
+        employee = employeeRepository.save(EmployeeEntity.builder().name("Routed worker").build());
+        //the replica did not see the latest changes yet: other version and title, no workers
+        replica.update("insert into departments (id, title, version, roster_version) values (?, ?, ?, 0)", department.getId(), "Stale", STALE_VERSION);
+        replica.update("insert into employees (id, name, version) values (?, ?, 0)", employee.getId(), employee.getName());
+    }
+
+    //the saves of setUp were made for the mock request spring binds to every test, which opened its read-your-writes
+    //window. without a request the read belongs to no client.
+    @Test
+    void readOnlyJpaTransactionsReadTheReplica() {
+        RequestContextHolder.resetRequestAttributes();
+
+        assertThat(readOnlyVersion()).isEqualTo(STALE_VERSION);
+    }
+
+    @Test
+    void readAfterAWriteOfTheSameRequestGoesToThePrimary() {
+        assertThat(RequestContextHolder.getRequestAttributes()).isNotNull();
+
+        assertThat(readOnlyVersion()).isEqualTo(department.getVersion());
+    }
+
+    //whatever ends up in the cache is served to everybody, so it is loaded from the primary
+    @Test
+    void cachedDepartmentIsLoadedFromThePrimary() {
+        assertThat(departmentService.getDepartmentById(department.getId()).title()).isEqualTo("Routed");
+        assertThat(departmentService.getDepartmentETag(department.getId())).startsWith(department.getId() + "-" + department.getVersion() + "-");
+    }
+
+    @Test
+    void clientReadsItsOwnWriteOthersReadTheReplica() throws Exception {
+        Cookie cookie = mockMvc.perform(put("/departments/{departmentId}/worker/{employeeId}", department.getId(), employee.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie(ReadYourWrites.COOKIE);
+        assertThat(cookie).isNotNull();
+
+        mockMvc.perform(get("/departments/{departmentId}/workers", department.getId()).cookie(cookie))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Routed worker"));
+
+        mockMvc.perform(get("/departments/{departmentId}/workers", department.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    private Long readOnlyVersion() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> departmentRepository.findVersionsById(department.getId()).version());
+    }
+}
@@ -0,0 +1,211 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.configs;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//embedded H2 databases stand in for primary and replicas. every database knows its own name,
+//so "select name from node" tells which one a transaction was routed to.
+class ReadWriteRoutingDataSourceTests {
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+    private EmbeddedDatabase primary;
+
+    private EmbeddedDatabase replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        Routing routing = routing(List.of(replica), Duration.ZERO);
+
+        assertThat(routing.readOnly()).isEqualTo("replica");
+        assertThat(routing.readWrite()).isEqualTo("primary");
+        //no transaction at all -> primary
+        assertThat(routing.jdbcTemplate.queryForObject("select name from node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void readsAreSpreadOverTheReplicas() {
+        EmbeddedDatabase secondReplica = database("replica-2");
+        Routing routing = routing(List.of(replica, secondReplica), Duration.ZERO);
+
+        List<String> nodes = List.of(routing.readOnly(), routing.readOnly(), routing.readOnly(), routing.readOnly());
+
+        assertThat(nodes).containsExactlyInAnyOrder("replica", "replica", "replica-2", "replica-2");
+    }
+
+    @Test
+    void deadReplicaFailsOverToTheNextReplicaAndThenToThePrimary() {
+        //no driver for this url -> every getConnection() fails
+        DriverManagerDataSource deadReplica = new DriverManagerDataSource("jdbc:unreachable://replica:3306/mappings");
+
+        Routing withHealthyReplica = routing(List.of(deadReplica, replica), Duration.ZERO);
+        assertThat(withHealthyReplica.readOnly()).isEqualTo("replica");
+        assertThat(withHealthyReplica.readOnly()).isEqualTo("replica");
+        assertThat(withHealthyReplica.routingDataSource.getAvailableReplicas()).isEqualTo(1);
+
+        Routing withoutHealthyReplica = routing(List.of(deadReplica), Duration.ZERO);
+        assertThat(withoutHealthyReplica.readOnly()).isEqualTo("primary");
+    }
+
+    //loads that fill the caches read the primary, a lagging replica must not end up in a cache
+    @Test
+    void primaryReadTransactionsStayOnThePrimary() {
+        Routing routing = routing(List.of(replica), Duration.ZERO);
+
+        TransactionTemplate primaryRead = ReadWriteRoutingDataSource.primaryReadTransaction(routing.transactionTemplate.getTransactionManager());
+
+        String read = primaryRead.execute(status -> routing.jdbcTemplate.queryForObject("select name from node", String.class));
+
+        assertThat(read).isEqualTo("primary");
+        assertThat(routing.readOnly()).isEqualTo("replica");
+    }
+
+    @Test
+    void readsOfAClientGoToThePrimaryDuringTheReadYourWritesWindowOfItsWrite() {
+        Routing routing = routing(List.of(replica), Duration.ofMinutes(1));
+        AtomicReference<String> read = new AtomicReference<>();
+
+        MockHttpServletResponse written = inRequest(null, () -> {
+            routing.readWrite();
+            read.set(routing.readOnly());
+        });
+        assertThat(read.get()).isEqualTo("primary");
+        Cookie cookie = written.getCookie(ReadYourWrites.COOKIE);
+        assertThat(cookie).isNotNull();
+
+        //the next request of the same client
+        inRequest(cookie, () -> read.set(routing.readOnly()));
+        assertThat(read.get()).isEqualTo("primary");
+    }
+
+    @Test
+    void otherClientsKeepReadingTheReplicaAfterAWrite() {
+        Routing routing = routing(List.of(replica), Duration.ofMinutes(1));
+        AtomicReference<String> read = new AtomicReference<>();
+        inRequest(null, routing::readWrite);
+
+        inRequest(null, () -> read.set(routing.readOnly()));
+        assertThat(read.get()).isEqualTo("replica");
+        //and so do reads outside of a request
+        assertThat(routing.readOnly()).isEqualTo("replica");
+    }
+
+    @Test
+    void expiredWindowReadsTheReplica() {
+        Routing routing = routing(List.of(replica), Duration.ofMinutes(1));
+        AtomicReference<String> read = new AtomicReference<>();
+        Cookie expired = new Cookie(ReadYourWrites.COOKIE, Long.toString(System.currentTimeMillis() - 1));
+
+        inRequest(expired, () -> read.set(routing.readOnly()));
+
+        assertThat(read.get()).isEqualTo("replica");
+    }
+
+    @Test
+    void writeOutsideOfARequestDoesNotSendReadsToThePrimary() {
+        Routing routing = routing(List.of(replica), Duration.ofMinutes(1));
+
+        routing.readWrite();
+
+        assertThat(routing.readOnly()).isEqualTo("replica");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotOpenTheReadYourWritesWindow() {
+        Routing routing = routing(List.of(replica), Duration.ofMinutes(1));
+        AtomicReference<String> read = new AtomicReference<>();
+
+        MockHttpServletResponse response = inRequest(null, () -> {
+            routing.transactionTemplate.executeWithoutResult(status -> {
+                routing.jdbcTemplate.queryForObject("select name from node", String.class);
+                status.setRollbackOnly();
+            });
+            read.set(routing.readOnly());
+        });
+
+        assertThat(read.get()).isEqualTo("replica");
+        assertThat(response.getCookie(ReadYourWrites.COOKIE)).isNull();
+    }
+
+    //runs the work the way it runs for a request of a client that sends the cookie (null = no cookie)
+    private static MockHttpServletResponse inRequest(Cookie cookie, Runnable work) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (cookie != null) request.setCookies(cookie);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        try {
+            work.run();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        return response;
+    }
+
+    private EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table node (name varchar(20))");
+        jdbcTemplate.update("insert into node (name) values (?)", name);
+        databases.add(database);
+        return database;
+    }
+
+    //wired the same way as ReadReplicaRoutingConfig: lazy proxy -> routing datasource -> pools
+    private Routing routing(List<DataSource> replicas, Duration readYourWritesWindow) {
+        ReadWriteRoutingDataSource routingDataSource =
+                new ReadWriteRoutingDataSource(primary, replicas, Duration.ofMinutes(1), readYourWritesWindow);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        return new Routing(routingDataSource, new JdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    private record Routing(ReadWriteRoutingDataSource routingDataSource, JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate) {
+
+        String readOnly() {
+            TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+            readOnly.setReadOnly(true);
+            return readOnly.execute(status -> jdbcTemplate.queryForObject("select name from node", String.class));
+        }
+
+        String readWrite() {
+            return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select name from node", String.class));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.AssignmentCommandView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.AssignmentPipeline;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.AssignmentQueueFullException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//a pipeline that is behind must turn into 503 + Retry-After, never into a request thread that waits forever
+@SpringBootTest(properties = "app.assignment-pipeline.response-timeout=50ms")
+@AutoConfigureMockMvc
+class AssignmentBackpressureTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AssignmentPipeline assignmentPipeline;
+
+    @BeforeEach
+    void setUp() {
+        when(assignmentPipeline.isEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void fullQueueIsServiceUnavailable() throws Exception {
+        when(assignmentPipeline.submitWorkerAssignment(1L, 2L)).thenThrow(new AssignmentQueueFullException(10));
+
+        mockMvc.perform(put("/departments/{departmentId}/worker/{employeeId}", 1L, 2L))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    //the command is still queued, the client can poll it instead of sending it again
+    @Test
+    void batchThatDoesNotCommitInTimeIsServiceUnavailable() throws Exception {
+        CompletableFuture<MembershipAck> neverCompleted = new CompletableFuture<>();
+        when(assignmentPipeline.submitWorkerAssignment(1L, 2L)).thenReturn(new AssignmentPipeline.Submission("c1", neverCompleted));
+        when(assignmentPipeline.getCommand("c1"))
+                .thenReturn(new AssignmentCommandView("c1", AssignmentCommandView.Status.QUEUED, 1L, 2L, null, null));
+
+        mockMvc.perform(put("/departments/{departmentId}/worker/{employeeId}", 1L, 2L))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(header().string(HttpHeaders.LOCATION, "/assignments/c1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+        //the timeout of the request does not end the command
+        assertThat(neverCompleted).isNotDone();
+    }
+}
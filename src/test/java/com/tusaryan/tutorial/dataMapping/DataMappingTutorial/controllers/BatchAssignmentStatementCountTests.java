@@ -0,0 +1,133 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.EmployeeService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//PUT /departments/{id}/workers and /freelancers: the number of statements must not grow with the number of employees
+//(one IN query for the employees, the writes go out as JDBC batches), and every id is reported in the right list.
+@SpringBootTest
+@AutoConfigureMockMvc
+class BatchAssignmentStatementCountTests {
+
+    private static final int SMALL_BATCH = 3;
+    private static final int LARGE_BATCH = 40;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void workerBatchUsesTheSameStatementsForAnySize() throws Exception {
+        long small = statementsOfBatch("workers", createDepartment(), createEmployees(SMALL_BATCH));
+        Long departmentId = createDepartment();
+        List<Long> employeeIds = createEmployees(LARGE_BATCH);
+        long large = statementsOfBatch("workers", departmentId, employeeIds);
+
+        assertThat(large).isEqualTo(small);
+        employeeIds.forEach(employeeId -> assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isEqualTo(departmentId));
+    }
+
+    @Test
+    void freelancerBatchUsesTheSameStatementsForAnySize() throws Exception {
+        long small = statementsOfBatch("freelancers", createDepartment(), createEmployees(SMALL_BATCH));
+        Long departmentId = createDepartment();
+        List<Long> employeeIds = createEmployees(LARGE_BATCH);
+        long large = statementsOfBatch("freelancers", departmentId, employeeIds);
+
+        assertThat(large).isEqualTo(small);
+        employeeIds.forEach(employeeId -> assertThat(employeeRepository.countFreelancerMapping(employeeId, departmentId)).isEqualTo(1));
+    }
+
+    @Test
+    void batchReportsAssignedAlreadyAssignedAndMissing() throws Exception {
+        Long departmentId = createDepartment();
+        Long otherDepartmentId = createDepartment();
+        List<Long> employeeIds = createEmployees(2);
+        departmentService.assignWorkerToDepartment(departmentId, employeeIds.get(0));
+        departmentService.assignWorkerToDepartment(otherDepartmentId, employeeIds.get(1));
+        long missingId = Long.MAX_VALUE;
+
+        mockMvc.perform(put("/departments/{departmentId}/workers", departmentId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + employeeIds.get(0) + ", " + employeeIds.get(1) + ", " + employeeIds.get(1) + ", " + missingId + "]"))
+                .andExpect(status().isOk())
+                //small ids are read back from the JSON as Integer, Long.MAX_VALUE as Long
+                .andExpect(jsonPath("$.assigned", contains(employeeIds.get(1).intValue())))
+                .andExpect(jsonPath("$.alreadyAssigned", contains(employeeIds.get(0).intValue())))
+                .andExpect(jsonPath("$.missing", contains(missingId)));
+
+        //moved, not copied
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeIds.get(1))).isEqualTo(departmentId);
+        assertThat(departmentService.getHeadcount(otherDepartmentId).workers()).isZero();
+        assertThat(departmentService.getHeadcount(departmentId).workers()).isEqualTo(2);
+    }
+
+    private long statementsOfBatch(String role, Long departmentId, List<Long> employeeIds) throws Exception {
+        statistics.clear();
+        assign(role, departmentId, employeeIds);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assign(String role, Long departmentId, List<Long> employeeIds) throws Exception {
+        mockMvc.perform(put("/departments/{departmentId}/" + role, departmentId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(employeeIds.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.assigned.length()").value(employeeIds.size()));
+    }
+
+    private Long createDepartment() {
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle("Batch");
+        return departmentService.createNewDepartment(department).id();
+    }
+
+    private List<Long> createEmployees(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(employeeService.createNewEmployee(EmployeeEntity.builder().name("Batch employee " + i).build()).id());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//the job is created before the rows are sent, so a client knows which job to resume when the upload breaks off
+@SpringBootTest
+@AutoConfigureMockMvc
+class ImportControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void jobIsCreatedBeforeItsRowsAreSent() throws Exception {
+        MvcResult created = mockMvc.perform(post("/imports").param("format", "NDJSON"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.format").value("NDJSON"))
+                .andExpect(jsonPath("$.status").value("CREATED"))
+                .andReturn();
+        Integer jobId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        assertThat(created.getResponse().getHeader(HttpHeaders.LOCATION)).isEqualTo("/imports/" + jobId);
+
+        mockMvc.perform(put("/imports/{jobId}/rows", jobId)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"type\":\"department\",\"ref\":\"d1\",\"name\":\"Uploaded\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.processedRows").value(1))
+                .andExpect(jsonPath("$.failedRows").value(0))
+                .andExpect(jsonPath("$.committedChunks").value(1))
+                .andExpect(jsonPath("$.errors").isEmpty());
+
+        mockMvc.perform(get("/imports/{jobId}", jobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    //the errors of the failed chunks are part of the answer to the upload
+    @Test
+    void failedChunkIsReportedInTheUploadResponse() throws Exception {
+        MvcResult created = mockMvc.perform(post("/imports").param("format", "CSV"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Integer jobId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        mockMvc.perform(put("/imports/{jobId}/rows", jobId)
+                        .contentType("text/csv")
+                        .content("department,d1,Uploaded with errors\nworker,d1,e9\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.processedRows").value(0))
+                .andExpect(jsonPath("$.failedRows").value(2))
+                .andExpect(jsonPath("$.failedChunks").value(1))
+                .andExpect(jsonPath("$.errors.length()").value(1))
+                .andExpect(jsonPath("$.errors[0].firstRow").value(1))
+                .andExpect(jsonPath("$.errors[0].lastRow").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value(containsString("Unknown employee ref 'e9'")));
+    }
+}
@@ -0,0 +1,277 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.EmployeeService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.OrgCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//pins the number of SQL statements of every read endpoint, so an N+1 coming back fails the build.
+//the counts are for a cold cache, a cached read must not run any statement (a conditional GET still reads the versions).
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadModelStatementCountTests {
+
+    private static final int WORKERS = 5;
+    private static final int FREELANCERS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private OrgCache orgCache;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    private Long departmentId;
+
+    private Long managerId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle("HR");
+        departmentId = departmentService.createNewDepartment(department).id();
+        managerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Manager").build()).id();
+        departmentService.assignManagerToDepartment(departmentId, managerId);
+        for (int i = 0; i < WORKERS; i++) {
+            Long workerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Worker " + i).build()).id();
+            departmentService.assignWorkerToDepartment(departmentId, workerId);
+        }
+        for (int i = 0; i < FREELANCERS; i++) {
+            Long freelancerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Freelancer " + i).build()).id();
+            departmentService.assignFreelancerToDepartment(departmentId, freelancerId);
+        }
+
+        orgCache.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void departmentByIdUsesThreeStatements() throws Exception {
+        mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.manager.id").value(managerId))
+                .andExpect(jsonPath("$.workers.length()").value(WORKERS))
+                .andExpect(jsonPath("$.freelancers.length()").value(FREELANCERS));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+
+        statistics.clear();
+        mockMvc.perform(get("/departments/{departmentId}", departmentId)).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void assignedDepartmentOfManagerUsesThreeStatements() throws Exception {
+        mockMvc.perform(get("/departments/assignedDepartmentOfManager/{employeeId}", managerId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(departmentId));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+
+        //the manager index and the department are both cached now
+        statistics.clear();
+        mockMvc.perform(get("/departments/assignedDepartmentOfManager/{employeeId}", managerId)).andExpect(status().isOk());
+        mockMvc.perform(get("/departments/{departmentId}", departmentId)).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void mutationEvictsCachedDepartment() throws Exception {
+        mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andExpect(jsonPath("$.workers.length()").value(WORKERS));
+
+        Long workerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Late worker").build()).id();
+        departmentService.assignWorkerToDepartment(departmentId, workerId);
+
+        mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andExpect(jsonPath("$.workers.length()").value(WORKERS + 1));
+    }
+
+    @Test
+    void rosterPagesUseOneStatementEach() throws Exception {
+        mockMvc.perform(get("/departments/{departmentId}/workers", departmentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(WORKERS));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(get("/departments/{departmentId}/freelancers", departmentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(FREELANCERS));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void headcountsAreCountedInOneStatement() throws Exception {
+        mockMvc.perform(get("/departments/{departmentId}/headcount", departmentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.workers").value(WORKERS))
+                .andExpect(jsonPath("$.freelancers").value(FREELANCERS))
+                .andExpect(jsonPath("$.hasManager").value(true));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(get("/departments/headcounts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.departmentId == %d)].workers", departmentId).value(WORKERS));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void employeeByIdUsesOneStatement() throws Exception {
+        mockMvc.perform(get("/employees/{employeeId}", managerId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Manager"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedDepartmentIsAnsweredWithNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //view is cached -> still one select of the versions, the cached view may be older than the database
+        statistics.clear();
+        mockMvc.perform(get("/departments/{departmentId}", departmentId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        //view evicted (e.g. expired) -> the same select, the rosters are not loaded
+        cacheManager.getCache(OrgCache.DEPARTMENTS).clear();
+        statistics.clear();
+        mockMvc.perform(get("/departments/{departmentId}", departmentId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rosterChangeChangesTheETag() throws Exception {
+        String etag = mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Long workerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Late worker").build()).id();
+        departmentService.assignWorkerToDepartment(departmentId, workerId);
+
+        String newEtag = mockMvc.perform(get("/departments/{departmentId}", departmentId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.workers.length()").value(WORKERS + 1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    //a roster changed through another instance (or any other writer): this instance's cache doesn't know about it,
+    //the ETag must change anyway and the cached view must not be served
+    @Test
+    void rosterChangedBehindTheCacheIsNotAnsweredWithNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Long workerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Other instance's worker").build()).id();
+        jdbcTemplate.update("insert into worker_department_mapping (employee_id, department_id) values (?, ?)", workerId, departmentId);
+        jdbcTemplate.update("update departments set roster_version = roster_version + 1 where id = ?", departmentId);
+
+        String newEtag = mockMvc.perform(get("/departments/{departmentId}", departmentId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.workers.length()").value(WORKERS + 1))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+
+    @Test
+    void binaryFormatHasItsOwnETag() throws Exception {
+        String jsonEtag = mockMvc.perform(get("/departments/{departmentId}", departmentId))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String cborEtag = mockMvc.perform(get("/departments/{departmentId}", departmentId).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(cborEtag).isNotEqualTo(jsonEtag);
+
+        //the JSON ETag doesn't validate the CBOR representation
+        mockMvc.perform(get("/departments/{departmentId}", departmentId).accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, jsonEtag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void nameSearchUsesOneStatementPerPage() throws Exception {
+        String firstPage = mockMvc.perform(get("/employees/search")
+                        .param("prefix", "Worker").param("workerOf", departmentId.toString()).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Worker 0"))
+                .andExpect(jsonPath("$.items[1].name").value("Worker 1"))
+                .andExpect(jsonPath("$.nextAfterName").value("Worker 1"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        Long nextAfterId = JsonPath.parse(firstPage).read("$.nextAfterId", Long.class);
+        mockMvc.perform(get("/employees/search").param("prefix", "Worker").param("workerOf", departmentId.toString())
+                        .param("afterName", "Worker 1").param("afterId", nextAfterId.toString()).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Worker 2"))
+                .andExpect(jsonPath("$.items[1].name").value("Worker 3"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        mockMvc.perform(get("/employees/search").param("prefix", "Freelancer 2").param("freelancerOf", departmentId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.nextAfterName").value(nullValue()));
+    }
+
+    @Test
+    void unchangedEmployeeIsAnsweredWithNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/employees/{employeeId}", managerId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/employees/{employeeId}", managerId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,112 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.DepartmentService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.EmployeeService;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services.OrgCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//a budget of one statement, so a cold read of a department (header + rosters) is flagged
+@SpringBootTest(properties = "app.persistence-metrics.query-budget=1")
+@AutoConfigureMockMvc
+class PersistenceMetricsInterceptorTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private OrgCache orgCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long departmentId;
+
+    @BeforeEach
+    void setUp() {
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle("Metrics");
+        departmentId = departmentService.createNewDepartment(department).id();
+        Long workerId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Metrics worker").build()).id();
+        departmentService.assignWorkerToDepartment(departmentId, workerId);
+        orgCache.clear();
+    }
+
+    @Test
+    void statementsOfARequestAreRecordedPerEndpoint() throws Exception {
+        String uri = "/departments/{departmentId}";
+        long requests = statements(uri).count();
+        double statements = statements(uri).totalAmount();
+        double flagged = flaggedOverBudget(uri).count();
+
+        mockMvc.perform(get(uri, departmentId)).andExpect(status().isOk());
+
+        assertThat(statements(uri).count()).isEqualTo(requests + 1);
+        assertThat(statements(uri).totalAmount()).isGreaterThan(statements);
+        assertThat(flaggedOverBudget(uri).count()).isEqualTo(flagged + 1);
+    }
+
+    //the roster is read on a task executor thread, after the handler returned. those statements belong to the request too
+    @Test
+    void statementsOfTheAsyncPartOfAStreamAreRecorded() throws Exception {
+        String uri = "/departments/{departmentId}/workers/stream";
+        long requests = statements(uri).count();
+        double statements = statements(uri).totalAmount();
+
+        MvcResult started = mockMvc.perform(get(uri, departmentId)).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        assertThat(statements(uri).count()).isEqualTo(requests + 1);
+        assertThat(statements(uri).totalAmount()).isGreaterThan(statements);
+    }
+
+    @Test
+    void jdbcTemplateStatementsAreCounted() {
+        RequestPersistenceStats.start();
+        try {
+            jdbcTemplate.queryForObject("select count(*) from departments", Long.class);
+            //one batch, one statement
+            jdbcTemplate.batchUpdate("update departments set title = title where id = ?",
+                    List.of(new Object[]{departmentId}, new Object[]{departmentId}));
+        } finally {
+            assertThat(RequestPersistenceStats.finish().getStatements()).isEqualTo(2);
+        }
+    }
+
+    private DistributionSummary statements(String uri) {
+        return DistributionSummary.builder("persistence.request.statements").tags(Tags.of("uri", uri, "method", "GET")).register(meterRegistry);
+    }
+
+    private Counter flaggedOverBudget(String uri) {
+        return Counter.builder("persistence.request.flagged").tags(Tags.of("uri", uri, "method", "GET", "reason", "budget")).register(meterRegistry);
+    }
+}
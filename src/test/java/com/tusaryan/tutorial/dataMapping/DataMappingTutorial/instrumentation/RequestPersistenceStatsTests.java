@@ -0,0 +1,62 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.instrumentation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestPersistenceStatsTests {
+
+    @AfterEach
+    void tearDown() {
+        RequestPersistenceStats.finish();
+    }
+
+    @Test
+    void countsWhatHappensBetweenStartAndFinish() {
+        RequestPersistenceStats.start();
+        RequestPersistenceStats.statementPrepared("select d from departments d where d.id = ?");
+        RequestPersistenceStats.statementPrepared("select e from employees e where e.id = ?");
+        RequestPersistenceStats.statementPrepared("select e from employees e where e.id = ?");
+        RequestPersistenceStats.jdbcTemplateStatementPrepared();
+        RequestPersistenceStats.entityLoaded();
+        RequestPersistenceStats.collectionInitialized();
+
+        RequestPersistenceStats stats = RequestPersistenceStats.finish();
+
+        assertThat(stats.getStatements()).isEqualTo(4);
+        assertThat(stats.getEntitiesLoaded()).isEqualTo(1);
+        assertThat(stats.getCollectionsInitialized()).isEqualTo(1);
+        assertThat(stats.getMostRepeatedStatement()).isEqualTo(Map.entry("select e from employees e where e.id = ?", 2));
+    }
+
+    @Test
+    void nothingIsRecordedOutsideOfARequest() {
+        RequestPersistenceStats.statementPrepared("select 1");
+        RequestPersistenceStats.entityLoaded();
+
+        assertThat(RequestPersistenceStats.finish()).isNull();
+        assertThat(RequestPersistenceStats.start().getStatements()).isZero();
+    }
+
+    //the async part of a request runs on another thread with the same stats
+    @Test
+    void statsBoundToAnotherThreadAddUp() throws Exception {
+        RequestPersistenceStats stats = RequestPersistenceStats.start();
+        RequestPersistenceStats.statementPrepared("select 1");
+        RequestPersistenceStats.finish();
+
+        Thread other = new Thread(() -> {
+            RequestPersistenceStats.bind(stats);
+            RequestPersistenceStats.statementPrepared("select 2");
+            RequestPersistenceStats.finish();
+        });
+        other.start();
+        other.join();
+
+        assertThat(stats.getStatements()).isEqualTo(2);
+        assertThat(RequestPersistenceStats.finish()).isNull();
+    }
+}
@@ -0,0 +1,47 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.RosterPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//the hand written serializers must produce exactly what jackson's reflection did before, clients see no difference
+class ViewSerializersTests {
+
+    private static final DepartmentView DEPARTMENT = new DepartmentView(1L, "HR", 3L, 5L, new EmployeeView(7L, "Manager"),
+            List.of(new EmployeeView(8L, "Worker \"one\""), new EmployeeView(9L, "Wörker two")),
+            List.of(new EmployeeView(10L, null)));
+
+    private static final DepartmentView WITHOUT_MANAGER = new DepartmentView(2L, "Empty", 0L, 0L, null, List.of(), List.of());
+
+    private final ObjectMapper reflection = new ObjectMapper();
+
+    private final ObjectMapper json = new ObjectMapper().registerModule(new ViewSerializers());
+
+    @Test
+    void jsonIsTheSameAsWithReflection() throws Exception {
+        assertThat(json.writeValueAsString(DEPARTMENT)).isEqualTo(reflection.writeValueAsString(DEPARTMENT));
+        assertThat(json.writeValueAsString(WITHOUT_MANAGER)).isEqualTo(reflection.writeValueAsString(WITHOUT_MANAGER));
+
+        RosterPage page = RosterPage.of(DEPARTMENT.workers(), 2);
+        assertThat(json.writeValueAsString(page)).isEqualTo(reflection.writeValueAsString(page));
+    }
+
+    @Test
+    void binaryFormatsReadBackToTheSameDepartment() throws Exception {
+        for (ObjectMapper binary : List.of(new ObjectMapper(new CBORFactory()), new ObjectMapper(new SmileFactory()))) {
+            binary.registerModule(new ViewSerializers());
+            byte[] bytes = binary.writeValueAsBytes(DEPARTMENT);
+
+            assertThat(binary.readValue(bytes, DepartmentView.class)).isEqualTo(DEPARTMENT);
+            assertThat(bytes.length).isLessThan(json.writeValueAsBytes(DEPARTMENT).length);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.AssignmentCommandView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//the writer thread runs against mocked repositories. the first batch can be held in its transaction (holdFirstBatch),
+//everything submitted meanwhile queues up and is taken as the next batch
+class AssignmentPipelineTests {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private static final Long MISSING_DEPARTMENT = 99L;
+
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+
+    private final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+
+    private final AtomicBoolean holdFirstBatch = new AtomicBoolean();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DepartmentService departmentService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DepartmentRepository departmentRepository;
+
+    private EmployeeRepository employeeRepository;
+
+    private AssignmentPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        departmentService = mock(DepartmentService.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        departmentRepository = mock(DepartmentRepository.class);
+        employeeRepository = mock(EmployeeRepository.class);
+        //every department but MISSING_DEPARTMENT and every employee exists, nobody works anywhere yet
+        when(departmentRepository.findExistingIds(any())).thenAnswer(invocation -> {
+            if (holdFirstBatch.compareAndSet(true, false)) {
+                firstBatchStarted.countDown();
+                releaseFirstBatch.await();
+            }
+            return invocation.<Collection<Long>>getArgument(0).stream().filter(id -> !MISSING_DEPARTMENT.equals(id)).toList();
+        });
+        when(employeeRepository.findExistingIds(any())).thenAnswer(invocation -> List.copyOf(invocation.<Collection<Long>>getArgument(0)));
+        when(employeeRepository.findWorkerMemberships(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseFirstBatch.countDown();
+        if (pipeline != null) pipeline.stop();
+    }
+
+    @Test
+    void commandsThatQueueUpAreCommittedAsOneBatch() throws Exception {
+        start(100);
+        AssignmentPipeline.Submission first = submitWhileTheFirstBatchIsHeld(1L, 1L);
+
+        List<AssignmentPipeline.Submission> queued = List.of(
+                pipeline.submitWorkerAssignment(1L, 2L),
+                pipeline.submitWorkerAssignment(1L, 3L),
+                pipeline.submitWorkerAssignment(2L, 4L),
+                pipeline.submitWorkerAssignment(2L, 5L));
+        releaseFirstBatch.countDown();
+
+        assertThat(await(first).changed()).isTrue();
+        for (AssignmentPipeline.Submission submission : queued) {
+            assertThat(await(submission).changed()).isTrue();
+            assertThat(pipeline.getCommand(submission.commandId()).status()).isEqualTo(AssignmentCommandView.Status.COMPLETED);
+        }
+        DistributionSummary batchSizes = meterRegistry.summary("assignment.pipeline.batch.size");
+        assertThat(batchSizes.count()).isEqualTo(2);
+        assertThat(batchSizes.max()).isEqualTo(4);
+    }
+
+    //the same employee moved twice in one batch: only the last move is written, the first one gets its result
+    @Test
+    void lastWriterWinsWithinABatch() throws Exception {
+        start(100);
+        submitWhileTheFirstBatchIsHeld(1L, 1L);
+
+        AssignmentPipeline.Submission moved = pipeline.submitWorkerAssignment(2L, 7L);
+        AssignmentPipeline.Submission movedAgain = pipeline.submitWorkerAssignment(3L, 7L);
+        releaseFirstBatch.countDown();
+
+        MembershipAck winner = await(movedAgain);
+        assertThat(winner.departmentId()).isEqualTo(3L);
+        assertThat(await(moved)).isEqualTo(winner);
+        assertThat(pipeline.getCommand(moved.commandId()).status()).isEqualTo(AssignmentCommandView.Status.SUPERSEDED);
+        assertThat(pipeline.getCommand(movedAgain.commandId()).status()).isEqualTo(AssignmentCommandView.Status.COMPLETED);
+    }
+
+    //the command that won can't be written: the one it replaced ends with that rejection, not as "not found" itself
+    @Test
+    void rejectionOfTheWinnerIsTheOutcomeOfTheSupersededCommands() throws Exception {
+        start(100);
+        submitWhileTheFirstBatchIsHeld(1L, 1L);
+
+        AssignmentPipeline.Submission moved = pipeline.submitWorkerAssignment(2L, 7L);
+        AssignmentPipeline.Submission movedToMissing = pipeline.submitWorkerAssignment(MISSING_DEPARTMENT, 7L);
+        releaseFirstBatch.countDown();
+
+        assertThat(await(movedToMissing)).isNull();
+        assertThat(await(moved)).isNull();
+        AssignmentCommandView rejected = pipeline.getCommand(movedToMissing.commandId());
+        assertThat(rejected.status()).isEqualTo(AssignmentCommandView.Status.REJECTED);
+        assertThat(rejected.error()).isEqualTo("Department 99 or employee 7 not found");
+        AssignmentCommandView superseded = pipeline.getCommand(moved.commandId());
+        assertThat(superseded.status()).isEqualTo(AssignmentCommandView.Status.SUPERSEDED);
+        assertThat(superseded.error()).isEqualTo(rejected.error());
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        start(1);
+        submitWhileTheFirstBatchIsHeld(1L, 1L);
+        pipeline.submitWorkerAssignment(1L, 2L);
+
+        assertThatThrownBy(() -> pipeline.submitWorkerAssignment(1L, 3L)).isInstanceOf(AssignmentQueueFullException.class);
+    }
+
+    //one command that can't be written must not fail the others of its batch
+    @Test
+    void batchThatCantBeCommittedIsAppliedOneByOne() throws Exception {
+        start(100);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(departmentService.assignWorkerToDepartment(1L, 1L)).thenReturn(new MembershipAck(1L, 1L, MembershipAck.Role.WORKER, true));
+        when(departmentService.assignWorkerToDepartment(1L, 2L)).thenThrow(new DataIntegrityViolationException("duplicate"));
+        submitWhileTheFirstBatchIsHeld(9L, 9L);
+
+        AssignmentPipeline.Submission fine = pipeline.submitWorkerAssignment(1L, 1L);
+        AssignmentPipeline.Submission failing = pipeline.submitWorkerAssignment(1L, 2L);
+        releaseFirstBatch.countDown();
+
+        assertThat(await(fine).changed()).isTrue();
+        assertThatThrownBy(() -> await(failing)).hasCauseInstanceOf(DataIntegrityViolationException.class);
+        assertThat(pipeline.getCommand(failing.commandId()).status()).isEqualTo(AssignmentCommandView.Status.FAILED);
+        assertThat(pipeline.getCommand(fine.commandId()).status()).isEqualTo(AssignmentCommandView.Status.COMPLETED);
+    }
+
+    //stop() takes no new commands but still commits the ones that are queued
+    @Test
+    void queuedCommandsAreCommittedOnShutdown() throws Exception {
+        start(100);
+        AssignmentPipeline.Submission first = submitWhileTheFirstBatchIsHeld(1L, 1L);
+        AssignmentPipeline.Submission queued = pipeline.submitWorkerAssignment(1L, 2L);
+
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(pipeline::stop);
+        while (pipeline.isRunning()) Thread.onSpinWait();
+        assertThatThrownBy(() -> pipeline.submitWorkerAssignment(1L, 3L)).isInstanceOf(IllegalStateException.class);
+        releaseFirstBatch.countDown();
+        stopped.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(first.result()).isCompleted();
+        assertThat(queued.result()).isCompleted();
+        assertThat(pipeline.getCommand(queued.commandId()).status()).isEqualTo(AssignmentCommandView.Status.COMPLETED);
+    }
+
+    private void start(int queueCapacity) {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        WorkerAssignmentWriter workerAssignmentWriter = new WorkerAssignmentWriter(departmentRepository, employeeRepository,
+                jdbcTemplate, new OrgCache(new NoOpCacheManager()), new HeadcountCounters(false),
+                new EmployeeNameIndex(employeeRepository, transactionManager, false));
+        pipeline = new AssignmentPipeline(departmentService, workerAssignmentWriter,
+                new RetryingTransaction(transactionManager, 1, Duration.ZERO), meterRegistry,
+                true, queueCapacity, 100, Duration.ZERO, Duration.ofMillis(10), Duration.ofMinutes(10));
+        pipeline.start();
+    }
+
+    //the writer has taken this command out of the queue and holds its batch open until releaseFirstBatch
+    private AssignmentPipeline.Submission submitWhileTheFirstBatchIsHeld(Long departmentId, Long employeeId) throws InterruptedException {
+        holdFirstBatch.set(true);
+        AssignmentPipeline.Submission submission = pipeline.submitWorkerAssignment(departmentId, employeeId);
+        assertThat(firstBatchStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        return submission;
+    }
+
+    private static MembershipAck await(AssignmentPipeline.Submission submission) throws Exception {
+        return submission.result().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,195 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//64 writers assign and remove at the same time. checks that no assignment got lost (final rows and versions match
+//what the writers did) and logs the throughput. own in-memory database, the retries get a generous limit because
+//the writers collide on purpose.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "spring.cache.type=none",
+        "app.concurrency.max-attempts=100"
+})
+class ConcurrentAssignmentStressTests {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentAssignmentStressTests.class);
+
+    private static final int WRITERS = 64;
+    private static final int OPERATIONS_PER_WRITER = 50;
+    private static final int DEPARTMENTS = 4;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private final List<Long> departmentIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        departmentIds.clear();
+        for (int i = 0; i < DEPARTMENTS; i++) {
+            DepartmentEntity department = new DepartmentEntity();
+            department.setTitle("Department " + i);
+            departmentIds.add(departmentService.createNewDepartment(department).id());
+        }
+    }
+
+    //every writer moves its own employees between a few hot departments. the department rows are shared by all
+    //writers, so if a membership change still wrote the department row they would all queue up on it.
+    @Test
+    void workersMovedBetweenHotDepartmentsAreNotLost() throws Exception {
+        int employeesPerWriter = 4;
+        List<List<Long>> employeesByWriter = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) employeesByWriter.add(createEmployees(employeesPerWriter));
+        Map<Long, Long> expectedDepartment = new ConcurrentHashMap<>();
+
+        runWriters("worker moves", writer -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                Long employeeId = employeesByWriter.get(writer).get(random.nextInt(employeesPerWriter));
+                Long departmentId = departmentIds.get(random.nextInt(DEPARTMENTS));
+                assertThat(departmentService.assignWorkerToDepartment(departmentId, employeeId)).isNotNull();
+                expectedDepartment.put(employeeId, departmentId);
+            }
+        });
+
+        expectedDepartment.forEach((employeeId, departmentId) ->
+                assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isEqualTo(departmentId));
+        long workers = departmentIds.stream().mapToLong(id -> departmentService.getHeadcount(id).workers()).sum();
+        assertThat(workers).isEqualTo(expectedDepartment.size());
+        //no membership change wrote a department row
+        departmentIds.forEach(id -> assertThat(departmentRepository.findById(id).orElseThrow().getVersion()).isZero());
+    }
+
+    //all writers fight over the same few employees. every call increments the employee version exactly once
+    //(retried attempts are rolled back), and per employee/department pair the successful adds minus the successful
+    //removes have to match the row that is left.
+    @Test
+    void contendedFreelancerChangesAreNotLost() throws Exception {
+        List<Long> employeeIds = createEmployees(8);
+        Map<Long, Long> initialVersions = versions(employeeIds);
+        Map<List<Long>, AtomicInteger> netAdds = new ConcurrentHashMap<>();
+        Map<Long, AtomicLong> calls = new ConcurrentHashMap<>();
+
+        runWriters("contended freelancer changes", writer -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                Long employeeId = employeeIds.get(random.nextInt(employeeIds.size()));
+                Long departmentId = departmentIds.get(random.nextInt(DEPARTMENTS));
+                boolean add = random.nextBoolean();
+                MembershipAck ack = add
+                        ? departmentService.assignFreelancerToDepartment(departmentId, employeeId)
+                        : departmentService.removeFreelancerFromDepartment(departmentId, employeeId);
+                calls.computeIfAbsent(employeeId, id -> new AtomicLong()).incrementAndGet();
+                if (ack.changed()) {
+                    netAdds.computeIfAbsent(List.of(employeeId, departmentId), pair -> new AtomicInteger()).addAndGet(add ? 1 : -1);
+                }
+            }
+        });
+
+        Map<Long, Long> finalVersions = versions(employeeIds);
+        for (Long employeeId : employeeIds) {
+            long expectedCalls = calls.getOrDefault(employeeId, new AtomicLong()).get();
+            assertThat(finalVersions.get(employeeId) - initialVersions.get(employeeId)).isEqualTo(expectedCalls);
+            for (Long departmentId : departmentIds) {
+                int net = netAdds.getOrDefault(List.of(employeeId, departmentId), new AtomicInteger()).get();
+                assertThat(net).isBetween(0, 1);
+                assertThat(employeeRepository.countFreelancerMapping(employeeId, departmentId)).isEqualTo(net);
+            }
+        }
+    }
+
+    //every writer makes its own employee the manager of the same department, several times. the version check makes
+    //the losers run again, in the end the manager index has to agree with the department for every candidate.
+    @Test
+    void concurrentManagerAssignmentsKeepTheManagerIndexConsistent() throws Exception {
+        Long departmentId = departmentIds.get(0);
+        List<Long> candidates = createEmployees(WRITERS);
+
+        runWriters("manager assignments", writer -> {
+            for (int i = 0; i < 5; i++) {
+                assertThat(departmentService.assignManagerToDepartment(departmentId, candidates.get(writer))).isNotNull();
+            }
+        });
+
+        DepartmentView department = departmentService.getDepartmentById(departmentId);
+        assertThat(candidates).contains(department.manager().id());
+        for (Long candidate : candidates) {
+            DepartmentView managed = departmentService.assignedDepartmentOfManager(candidate);
+            if (candidate.equals(department.manager().id())) {
+                assertThat(managed.id()).isEqualTo(departmentId);
+            } else {
+                assertThat(managed).isNull();
+            }
+        }
+    }
+
+    private List<Long> createEmployees(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(employeeService.createNewEmployee(EmployeeEntity.builder().name("Employee " + i).build()).id());
+        }
+        return ids;
+    }
+
+    private Map<Long, Long> versions(List<Long> employeeIds) {
+        Map<Long, Long> versions = new ConcurrentHashMap<>();
+        employeeRepository.findAllById(employeeIds).forEach(employee -> versions.put(employee.getId(), employee.getVersion()));
+        return versions;
+    }
+
+    private void runWriters(String name, WriterTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(WRITERS)) {
+            for (int writer = 0; writer < WRITERS; writer++) {
+                int writerIndex = writer;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    task.run(writerIndex);
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> writer : writers) writer.get(2, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            log.info("{}: {} writers, {} operations in {} s -> {} ops/s", name, WRITERS, WRITERS * OPERATIONS_PER_WRITER,
+                    String.format("%.2f", seconds), String.format("%.0f", WRITERS * OPERATIONS_PER_WRITER / seconds));
+        }
+    }
+
+    @FunctionalInterface
+    private interface WriterTask {
+        void run(int writer) throws Exception;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeader;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//thousands of concurrent reads of one cold department must cause a single load.
+//caching is switched off (NoOpCacheManager), so only the coalescing is measured. the load only returns once every
+//other caller is parked waiting for it, i.e. has joined it, so a caller can't come too late and start a second load.
+class DepartmentServiceCoalescingTests {
+
+    private static final int CALLERS = 5_000;
+
+    private final AtomicInteger departmentLoads = new AtomicInteger();
+
+    private final CountDownLatch allCallersStarted = new CountDownLatch(CALLERS);
+
+    private final Set<Thread> callers = ConcurrentHashMap.newKeySet();
+
+    private DepartmentService departmentService;
+
+    @BeforeEach
+    void setUp() {
+        DepartmentRepository departmentRepository = mock(DepartmentRepository.class);
+        EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+        Answer<Optional<DepartmentHeader>> slowLoad = invocation -> {
+            departmentLoads.incrementAndGet();
+            //keep the load in flight until every caller has asked for the department and waits for this load
+            allCallersStarted.await();
+            awaitOtherCallersJoined();
+            return Optional.of(new DepartmentHeader(invocation.getArgument(0), "HR", 0L, 0L, 7L, "Manager"));
+        };
+        when(departmentRepository.findHeaderById(anyLong())).thenAnswer(slowLoad);
+        when(departmentRepository.findHeaderByManagerId(anyLong())).thenAnswer(slowLoad);
+        when(employeeRepository.findWorkerPage(anyLong(), anyLong(), any())).thenReturn(List.of());
+        when(employeeRepository.findFreelancerPage(anyLong(), anyLong(), any())).thenReturn(List.of());
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        OrgCache orgCache = new OrgCache(new NoOpCacheManager());
+        HeadcountCounters headcountCounters = new HeadcountCounters(false);
+        EmployeeNameIndex employeeNameIndex = new EmployeeNameIndex(employeeRepository, transactionManager, false);
+        departmentService = new DepartmentService(departmentRepository, employeeRepository, orgCache, headcountCounters,
+                employeeNameIndex, new RetryingTransaction(transactionManager, 1, Duration.ZERO),
+                new WorkerAssignmentWriter(departmentRepository, employeeRepository, mock(JdbcTemplate.class), orgCache,
+                        headcountCounters, employeeNameIndex),
+                transactionManager);
+    }
+
+    @Test
+    void concurrentReadsOfOneDepartmentShareOneLoad() throws Exception {
+        List<DepartmentView> results = callConcurrently(() -> departmentService.getDepartmentById(1L));
+
+        assertThat(departmentLoads).hasValue(1);
+        assertThat(results).hasSize(CALLERS).allSatisfy(department -> assertThat(department).isSameAs(results.get(0)));
+    }
+
+    @Test
+    void concurrentManagerLookupsShareOneLoad() throws Exception {
+        List<DepartmentView> results = callConcurrently(() -> departmentService.assignedDepartmentOfManager(7L));
+
+        assertThat(departmentLoads).hasValue(1);
+        assertThat(results).hasSize(CALLERS).allSatisfy(department -> assertThat(department).isSameAs(results.get(0)));
+    }
+
+    @Test
+    void loadsOfDifferentDepartmentsAreNotCoalesced() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<DepartmentView> first = executor.submit(() -> departmentService.getDepartmentById(1L));
+            Future<DepartmentView> second = executor.submit(() -> departmentService.getDepartmentById(2L));
+            for (int i = 0; i < CALLERS; i++) allCallersStarted.countDown();
+
+            assertThat(first.get().id()).isEqualTo(1L);
+            assertThat(second.get().id()).isEqualTo(2L);
+        }
+        assertThat(departmentLoads).hasValue(2);
+    }
+
+    private List<DepartmentView> callConcurrently(Callable<DepartmentView> call) throws Exception {
+        List<Future<DepartmentView>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> {
+                    callers.add(Thread.currentThread());
+                    allCallersStarted.countDown();
+                    return call.call();
+                }));
+            }
+        }
+        List<DepartmentView> results = new ArrayList<>();
+        for (Future<DepartmentView> future : futures) results.add(future.get());
+        return results;
+    }
+
+    //a caller that joined the load is parked in SingleFlight (waiting for the load's future), there is nothing else
+    //on the way from the service to the load where a caller can park
+    private void awaitOtherCallersJoined() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (Thread caller : callers) {
+            if (caller == Thread.currentThread()) continue;
+            while (caller.getState() != Thread.State.WAITING) {
+                if (System.nanoTime() > deadline) throw new AssertionError(caller + " did not join the load");
+                //the callers are virtual threads too, yield lets them run on this carrier
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//the in-memory index has to answer like the database queries: prefix, order by name and id, keyset paging, department filters
+class EmployeeNameIndexTests {
+
+    private EmployeeNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+        when(employeeRepository.streamAll()).thenReturn(Stream.of(
+                new EmployeeView(1L, "Anna"), new EmployeeView(2L, "annika"), new EmployeeView(3L, "Bob"), new EmployeeView(4L, "Anna")));
+        when(employeeRepository.streamWorkerMemberships()).thenReturn(Stream.empty());
+        when(employeeRepository.streamFreelancerMemberships()).thenReturn(Stream.empty());
+
+        index = new EmployeeNameIndex(employeeRepository, mock(PlatformTransactionManager.class), true);
+    }
+
+    @Test
+    void searchesNeedTheDatabaseUntilTheIndexIsLoaded() {
+        assertThat(index.search("an", null, null, null, null, 10)).isNull();
+
+        index.rebuild();
+
+        assertThat(index.isLoaded()).isTrue();
+        assertThat(index.search("an", null, null, null, null, 10)).isNotNull();
+    }
+
+    @Test
+    void prefixIgnoresCaseAndPagesByNameAndId() {
+        index.rebuild();
+
+        assertThat(ids(index.search("AN", null, null, null, null, 10))).containsExactly(1L, 4L, 2L);
+        assertThat(ids(index.search("an", null, null, null, null, 2))).containsExactly(1L, 4L);
+        assertThat(ids(index.search("an", null, null, "Anna", 4L, 2))).containsExactly(2L);
+        //a position before the prefix starts at the prefix
+        assertThat(ids(index.search("b", null, null, "Anna", 1L, 2))).containsExactly(3L);
+    }
+
+    @Test
+    void changesAreAppliedToTheDepartmentFilters() {
+        index.rebuild();
+        index.employeeCreated(5L, "Andy");
+        index.workerAssigned(5L, 10L);
+        index.workerAssigned(1L, 10L);
+        index.freelancerAssigned(2L, 20L);
+
+        assertThat(ids(index.search("an", 10L, null, null, null, 10))).containsExactly(5L, 1L);
+        assertThat(ids(index.search("an", null, 20L, null, null, 10))).containsExactly(2L);
+
+        index.workerAssigned(1L, 11L);
+        index.workerRemoved(5L, 10L);
+        index.freelancerRemoved(2L, 20L);
+
+        assertThat(index.search("an", 10L, null, null, null, 10)).isEmpty();
+        assertThat(index.search("an", null, 20L, null, null, 10)).isEmpty();
+    }
+
+    //like utf8mb4_0900_ai_ci
+    @Test
+    void accentsAreIgnoredLikeCase() {
+        index.rebuild();
+        index.employeeCreated(5L, "Ánne");
+        index.employeeCreated(6L, "ANNÉE");
+
+        assertThat(ids(index.search("anne", null, null, null, null, 10))).containsExactly(5L, 6L);
+        assertThat(ids(index.search("ÀNNE", null, null, "Ánne", 5L, 10))).containsExactly(6L);
+    }
+
+    @Test
+    void movedWorkerLeavesItsPreviousDepartment() {
+        index.rebuild();
+        index.workerAssigned(1L, 10L);
+        index.workerAssigned(1L, 11L);
+
+        assertThat(index.search("anna", 10L, null, null, null, 10)).isEmpty();
+        assertThat(ids(index.search("anna", 11L, null, null, null, 10))).containsExactly(1L);
+    }
+
+    //a rebuild can stream a membership before the employee itself, the employee's creation is replayed later
+    @Test
+    void membershipOfAnEmployeeThatIsNotIndexedYetIsKept() {
+        index.rebuild();
+        index.workerAssigned(7L, 10L);
+        index.freelancerAssigned(7L, 20L);
+        index.employeeCreated(7L, "Andrea");
+
+        assertThat(ids(index.search("an", 10L, null, null, null, 10))).containsExactly(7L);
+        assertThat(ids(index.search("an", null, 20L, null, null, 10))).containsExactly(7L);
+    }
+
+    private static List<Long> ids(List<EmployeeView> employees) {
+        return employees.stream().map(EmployeeView::id).toList();
+    }
+}
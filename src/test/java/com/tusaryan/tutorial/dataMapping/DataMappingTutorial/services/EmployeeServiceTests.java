@@ -0,0 +1,40 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+//the ETag of an employee changes with every change of what GET /employees/{id} returns
+class EmployeeServiceTests {
+
+    private final EmployeeService employeeService;
+
+    EmployeeServiceTests() {
+        EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        employeeService = new EmployeeService(employeeRepository, mock(DepartmentRepository.class),
+                new OrgCache(new NoOpCacheManager()), new EmployeeNameIndex(employeeRepository, transactionManager, false),
+                transactionManager);
+    }
+
+    @Test
+    void sameViewHasTheSameETag() {
+        assertThat(employeeService.getEmployeeETag(new EmployeeView(1L, "Anna")))
+                .isEqualTo(employeeService.getEmployeeETag(new EmployeeView(1L, "Anna")));
+    }
+
+    //"Aa".hashCode() == "BB".hashCode()
+    @Test
+    void namesWithTheSameHashCodeHaveDifferentETags() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(employeeService.getEmployeeETag(new EmployeeView(1L, "Aa")))
+                .isNotEqualTo(employeeService.getEmployeeETag(new EmployeeView(1L, "BB")));
+    }
+}
@@ -0,0 +1,143 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentHeadcount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//loads that interleave with the commit of a change. a change is registered inside a (simulated) transaction
+//and completed later by calling afterCompletion, like spring does after the commit.
+class HeadcountCountersTests {
+
+    private static final Long DEPARTMENT_ID = 1L;
+
+    private HeadcountCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        counters = new HeadcountCounters(true);
+    }
+
+    @Test
+    void loadBeforeAChangeIsKeptAndGetsTheDelta() {
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(0)).workers()).isZero();
+
+        complete(inTransaction(() -> counters.workersChanged(DEPARTMENT_ID, 1)), TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, notLoaded()).workers()).isEqualTo(1);
+    }
+
+    //the change is committed, its afterCompletion did not run yet: the load already sees its row and must not be kept,
+    //otherwise afterCompletion adds the same worker a second time
+    @Test
+    void loadBetweenCommitAndAfterCompletionIsNotKept() {
+        List<TransactionSynchronization> change = inTransaction(() -> counters.workersChanged(DEPARTMENT_ID, 1));
+
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(1)).workers()).isEqualTo(1);
+        complete(change, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(1)).workers()).isEqualTo(1);
+        //and the load after that is kept
+        assertThat(counters.headcount(DEPARTMENT_ID, notLoaded()).workers()).isEqualTo(1);
+    }
+
+    //the change started and completed while the load was reading, the load may have missed it
+    @Test
+    void loadThatOverlapsACompletedChangeIsNotKept() {
+        counters.headcount(DEPARTMENT_ID, () -> {
+            complete(inTransaction(() -> counters.workersChanged(DEPARTMENT_ID, 1)), TransactionSynchronization.STATUS_COMMITTED);
+            return headcount(0);
+        });
+
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(1)).workers()).isEqualTo(1);
+    }
+
+    @Test
+    void changeOfAnotherDepartmentStillPendingKeepsLoadsOut() {
+        List<TransactionSynchronization> change = inTransaction(() -> counters.workersChanged(2L, 1));
+
+        counters.headcount(DEPARTMENT_ID, () -> headcount(3));
+        complete(change, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(4)).workers()).isEqualTo(4);
+    }
+
+    @Test
+    void rolledBackChangeIsNotApplied() {
+        counters.headcount(DEPARTMENT_ID, () -> headcount(2));
+
+        complete(inTransaction(() -> counters.workersChanged(DEPARTMENT_ID, -1)), TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, notLoaded()).workers()).isEqualTo(2);
+    }
+
+    @Test
+    void rolledBackChangeStillKeepsAnOverlappingLoadOut() {
+        List<TransactionSynchronization> change = inTransaction(() -> counters.workersChanged(DEPARTMENT_ID, 1));
+
+        counters.headcount(DEPARTMENT_ID, () -> headcount(0));
+        complete(change, TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, () -> headcount(5)).workers()).isEqualTo(5);
+    }
+
+    @Test
+    void allHeadcountsAreNotKeptWhileAChangeIsPending() {
+        List<TransactionSynchronization> change = inTransaction(() -> counters.freelancersChanged(DEPARTMENT_ID, 1));
+
+        counters.headcounts(() -> List.of(headcount(0)));
+        complete(change, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(counters.headcounts(() -> List.of(headcount(7)))).containsExactly(headcount(7));
+        assertThat(counters.headcounts(() -> {
+            throw new AssertionError("loaded again");
+        })).containsExactly(headcount(7));
+    }
+
+    @Test
+    void changeWithoutATransactionIsAppliedRightAway() {
+        counters.headcount(DEPARTMENT_ID, () -> headcount(1));
+
+        counters.workersChanged(DEPARTMENT_ID, 1);
+
+        assertThat(counters.headcount(DEPARTMENT_ID, notLoaded()).workers()).isEqualTo(2);
+    }
+
+    @Test
+    void disabledCountersAlwaysLoad() {
+        HeadcountCounters disabled = new HeadcountCounters(false);
+        disabled.headcount(DEPARTMENT_ID, () -> headcount(1));
+
+        assertThat(disabled.headcount(DEPARTMENT_ID, () -> headcount(2)).workers()).isEqualTo(2);
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable change) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            change.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void complete(List<TransactionSynchronization> synchronizations, int status) {
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static DepartmentHeadcount headcount(long workers) {
+        return new DepartmentHeadcount(DEPARTMENT_ID, workers, 0, false);
+    }
+
+    private static Supplier<DepartmentHeadcount> notLoaded() {
+        return () -> {
+            throw new AssertionError("loaded again");
+        };
+    }
+}
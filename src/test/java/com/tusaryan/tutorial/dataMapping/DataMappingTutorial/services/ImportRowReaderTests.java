@@ -0,0 +1,98 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportRow;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportJobEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportRowReaderTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void csvRowsOfEveryType() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.CSV, """
+                type,ref,name
+                department,d1,HR
+                Employee, e1 ,"Singh, Aryan"
+                worker, d1, e1
+
+                freelancer,d1,e1
+                """);
+
+        assertThat(rows).containsExactly(
+                new ImportRow("department", "d1", "HR", null, null, null),
+                new ImportRow("employee", "e1", "Singh, Aryan", null, null, null),
+                new ImportRow("worker", null, null, "d1", "e1", null),
+                new ImportRow("freelancer", null, null, "d1", "e1", null));
+    }
+
+    @Test
+    void csvQuotesInsideQuotedFields() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.CSV, "employee,e1,\"Aryan \"\"Tus\"\" Singh\"\n");
+
+        assertThat(rows).extracting(ImportRow::name).containsExactly("Aryan \"Tus\" Singh");
+    }
+
+    //only the first line can be the header, a "type,..." line later on is a row
+    @Test
+    void csvHeaderIsOnlySkippedOnTheFirstLine() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.CSV, "department,d1,HR\ntype,d1,e1\n");
+
+        assertThat(rows).containsExactly(
+                new ImportRow("department", "d1", "HR", null, null, null),
+                new ImportRow("type", null, null, "d1", "e1", null));
+    }
+
+    @Test
+    void csvLineWithTheWrongNumberOfColumnsIsAnInvalidRow() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.CSV, "department,d1\nemployee,e1,Aryan\n");
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).error()).startsWith("Expected 3 columns but got 2");
+        assertThat(rows.get(1).error()).isNull();
+    }
+
+    @Test
+    void ndjsonRowsOfEveryType() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.NDJSON, """
+                {"type":"department","ref":"d1","name":"HR"}
+                {"type":"EMPLOYEE","ref":"e1","name":"Aryan","age":30}
+
+                {"type":"manager","department":"d1","employee":"e1"}
+                """);
+
+        assertThat(rows).containsExactly(
+                new ImportRow("department", "d1", "HR", null, null, null),
+                new ImportRow("employee", "e1", "Aryan", null, null, null),
+                new ImportRow("manager", null, null, "d1", "e1", null));
+    }
+
+    @Test
+    void ndjsonLinesThatCantBeParsedAreInvalidRows() {
+        List<ImportRow> rows = read(ImportJobEntity.Format.NDJSON, """
+                {"type":"department","ref":"d1"
+                {"ref":"e1","name":"Aryan"}
+                {"type":"employee","ref":"e1","name":"Aryan"}
+                """);
+
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0).error()).startsWith("Malformed JSON");
+        assertThat(rows.get(1).error()).startsWith("Row without type");
+        assertThat(rows.get(2).error()).isNull();
+    }
+
+    private List<ImportRow> read(ImportJobEntity.Format format, String body) {
+        ImportRowReader reader = new ImportRowReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, objectMapper);
+        List<ImportRow> rows = new ArrayList<>();
+        reader.forEachRemaining(rows::add);
+        return rows;
+    }
+}
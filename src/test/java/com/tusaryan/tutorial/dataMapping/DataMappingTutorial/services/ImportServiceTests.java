@@ -0,0 +1,165 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.ImportJobView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.ImportJobEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//chunks of 2 rows, so a few lines are enough for several chunks
+@SpringBootTest(properties = "app.import.chunk-size=2")
+class ImportServiceTests {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rowsAndRelationshipsAreImported() {
+        Long jobId = importService.createImportJob(ImportJobEntity.Format.CSV).id();
+
+        ImportJobView job = importService.importRows(jobId, body("""
+                department,d1,Imported HR
+                employee,e1,Imported manager
+                employee,e2,Imported worker
+                manager,d1,e1
+                worker,d1,e2
+                freelancer,d1,e1
+                """));
+
+        assertThat(job.status()).isEqualTo("COMPLETED");
+        assertThat(job.processedRows()).isEqualTo(6);
+        assertThat(job.committedChunks()).isEqualTo(3);
+        Long departmentId = jdbcTemplate.queryForObject("select id from departments where title = 'Imported HR'", Long.class);
+        assertThat(jdbcTemplate.queryForObject("select e.name from departments d join employees e on e.id = d.department_manager where d.id = ?",
+                String.class, departmentId)).isEqualTo("Imported manager");
+        assertThat(jdbcTemplate.queryForObject("select e.name from worker_department_mapping m join employees e on e.id = m.employee_id " +
+                "where m.department_id = ?", String.class, departmentId)).isEqualTo("Imported worker");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from freelancer_department_mapping where department_id = ?",
+                Integer.class, departmentId)).isEqualTo(1);
+    }
+
+    //the chunk with the unknown ref is rolled back as a whole, the chunks around it are committed
+    @Test
+    void failedChunkIsRolledBackAndCountedSeparately() {
+        Long jobId = importService.createImportJob(ImportJobEntity.Format.CSV).id();
+
+        ImportJobView job = importService.importRows(jobId, body("""
+                department,d1,Failing HR
+                employee,e1,Before the failed chunk
+                worker,d1,e9
+                employee,e2,In the failed chunk
+                employee,e3,After the failed chunk
+                """));
+
+        assertThat(job.status()).isEqualTo("COMPLETED");
+        assertThat(job.processedRows()).isEqualTo(3);
+        assertThat(job.failedRows()).isEqualTo(2);
+        assertThat(job.committedChunks()).isEqualTo(2);
+        assertThat(job.failedChunks()).isEqualTo(1);
+        assertThat(job.errors()).singleElement().satisfies(error -> {
+            assertThat(error.chunkIndex()).isEqualTo(1);
+            assertThat(error.firstRow()).isEqualTo(3);
+            assertThat(error.lastRow()).isEqualTo(4);
+            assertThat(error.message()).contains("Unknown employee ref 'e9'");
+        });
+        assertThat(countEmployees("Before the failed chunk")).isEqualTo(1);
+        assertThat(countEmployees("In the failed chunk")).isZero();
+        assertThat(countEmployees("After the failed chunk")).isEqualTo(1);
+    }
+
+    //the worker row of the first chunk refers to an employee of the second one. it fails the first time,
+    //sending the body again retries only that chunk and now the ref is known
+    @Test
+    void resumeRetriesTheFailedChunks() {
+        Long jobId = importService.createImportJob(ImportJobEntity.Format.CSV).id();
+        String body = """
+                department,d1,Retried HR
+                worker,d1,e1
+                employee,e1,Forward ref
+                employee,e2,Not imported twice
+                """;
+        assertThat(importService.importRows(jobId, body(body)).failedChunks()).isEqualTo(1);
+
+        ImportJobView job = importService.importRows(jobId, body(body));
+
+        assertThat(job.processedRows()).isEqualTo(4);
+        assertThat(job.failedRows()).isZero();
+        assertThat(job.committedChunks()).isEqualTo(2);
+        assertThat(job.failedChunks()).isZero();
+        assertThat(job.errors()).isEmpty();
+        assertThat(countEmployees("Forward ref")).isEqualTo(1);
+        assertThat(countEmployees("Not imported twice")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from worker_department_mapping m join departments d on d.id = m.department_id " +
+                "where d.title = 'Retried HR'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void chunkThatFailsAgainIsCountedOnce() {
+        Long jobId = importService.createImportJob(ImportJobEntity.Format.CSV).id();
+        String body = "worker,d1,e1\nemployee,e1,Fails twice\n";
+        importService.importRows(jobId, body(body));
+
+        ImportJobView job = importService.importRows(jobId, body(body));
+
+        assertThat(job.failedRows()).isEqualTo(2);
+        assertThat(job.failedChunks()).isEqualTo(1);
+        assertThat(job.errors()).hasSize(1);
+        assertThat(countEmployees("Fails twice")).isZero();
+    }
+
+    //the connection breaks after the first chunk: that one stays committed, the job is resumed after it
+    @Test
+    void interruptedImportResumesAfterTheLastCommittedChunk() {
+        Long jobId = importService.createImportJob(ImportJobEntity.Format.CSV).id();
+        String firstChunk = "employee,e1,Sent before the interruption\nemployee,e2,Also sent before\n";
+        String rest = "employee,e3,Sent on resume\n";
+        InputStream broken = new SequenceInputStream(
+                new ByteArrayInputStream(firstChunk.getBytes(StandardCharsets.UTF_8)),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        assertThatThrownBy(() -> importService.importRows(jobId, broken)).isInstanceOf(UncheckedIOException.class);
+        ImportJobView interrupted = importService.getImportJob(jobId);
+        assertThat(interrupted.status()).isEqualTo("INTERRUPTED");
+        assertThat(interrupted.processedRows()).isEqualTo(2);
+
+        ImportJobView job = importService.importRows(jobId, body(firstChunk + rest));
+
+        assertThat(job.status()).isEqualTo("COMPLETED");
+        assertThat(job.processedRows()).isEqualTo(3);
+        assertThat(countEmployees("Sent before the interruption")).isEqualTo(1);
+        assertThat(countEmployees("Sent on resume")).isEqualTo(1);
+    }
+
+    @Test
+    void unknownJobIsNotImported() {
+        assertThat(importService.importRows(Long.MAX_VALUE, body("employee,e1,Nobody\n"))).isNull();
+        assertThat(countEmployees("Nobody")).isZero();
+    }
+
+    private int countEmployees(String name) {
+        return jdbcTemplate.queryForObject("select count(*) from employees where name = ?", Integer.class, name);
+    }
+
+    private static InputStream body(String rows) {
+        return new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,131 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.MembershipAck;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//the single membership add/remove methods write one row of worker_department_mapping/freelancer_department_mapping
+//directly. checks the rows they leave behind and what their acks say.
+@SpringBootTest
+class MembershipWriteTests {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private Long departmentId;
+
+    private Long otherDepartmentId;
+
+    private Long employeeId;
+
+    @BeforeEach
+    void setUp() {
+        departmentId = createDepartment("Sales");
+        otherDepartmentId = createDepartment("Support");
+        employeeId = employeeService.createNewEmployee(EmployeeEntity.builder().name("Member").build()).id();
+    }
+
+    @Test
+    void movingAWorkerReplacesItsOnlyRow() {
+        assertThat(departmentService.assignWorkerToDepartment(departmentId, employeeId).changed()).isTrue();
+        MembershipAck moved = departmentService.assignWorkerToDepartment(otherDepartmentId, employeeId);
+
+        assertThat(moved).isEqualTo(new MembershipAck(otherDepartmentId, employeeId, MembershipAck.Role.WORKER, true));
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isEqualTo(otherDepartmentId);
+        assertThat(departmentService.getDepartmentById(departmentId).workers()).isEmpty();
+        assertThat(departmentService.getDepartmentById(otherDepartmentId).workers()).extracting(EmployeeView::id).containsExactly(employeeId);
+        assertThat(departmentService.getHeadcount(departmentId).workers()).isZero();
+        assertThat(departmentService.getHeadcount(otherDepartmentId).workers()).isEqualTo(1);
+    }
+
+    @Test
+    void assigningAWorkerTwiceChangesNothing() {
+        departmentService.assignWorkerToDepartment(departmentId, employeeId);
+        MembershipAck again = departmentService.assignWorkerToDepartment(departmentId, employeeId);
+
+        assertThat(again.changed()).isFalse();
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isEqualTo(departmentId);
+        assertThat(departmentService.getHeadcount(departmentId).workers()).isEqualTo(1);
+    }
+
+    @Test
+    void assigningAFreelancerTwiceKeepsOneRow() {
+        assertThat(departmentService.assignFreelancerToDepartment(departmentId, employeeId).changed()).isTrue();
+        MembershipAck again = departmentService.assignFreelancerToDepartment(departmentId, employeeId);
+
+        assertThat(again.changed()).isFalse();
+        assertThat(employeeRepository.countFreelancerMapping(employeeId, departmentId)).isEqualTo(1);
+        assertThat(departmentService.getHeadcount(departmentId).freelancers()).isEqualTo(1);
+    }
+
+    //a freelancer can work for several departments, adding one does not touch the others
+    @Test
+    void freelancerKeepsItsOtherDepartments() {
+        departmentService.assignFreelancerToDepartment(departmentId, employeeId);
+        departmentService.assignFreelancerToDepartment(otherDepartmentId, employeeId);
+
+        assertThat(employeeRepository.countFreelancerMapping(employeeId, departmentId)).isEqualTo(1);
+        assertThat(employeeRepository.countFreelancerMapping(employeeId, otherDepartmentId)).isEqualTo(1);
+    }
+
+    @Test
+    void removingAWorkerOfAnotherDepartmentChangesNothing() {
+        departmentService.assignWorkerToDepartment(otherDepartmentId, employeeId);
+
+        MembershipAck removed = departmentService.removeWorkerFromDepartment(departmentId, employeeId);
+
+        assertThat(removed).isEqualTo(new MembershipAck(departmentId, employeeId, MembershipAck.Role.WORKER, false));
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isEqualTo(otherDepartmentId);
+        assertThat(departmentService.getHeadcount(otherDepartmentId).workers()).isEqualTo(1);
+    }
+
+    @Test
+    void removingAFreelancerThatIsNotAMemberChangesNothing() {
+        departmentService.assignFreelancerToDepartment(otherDepartmentId, employeeId);
+
+        assertThat(departmentService.removeFreelancerFromDepartment(departmentId, employeeId).changed()).isFalse();
+        assertThat(employeeRepository.countFreelancerMapping(employeeId, otherDepartmentId)).isEqualTo(1);
+    }
+
+    @Test
+    void removingAMemberDeletesItsRow() {
+        departmentService.assignWorkerToDepartment(departmentId, employeeId);
+        departmentService.assignFreelancerToDepartment(departmentId, employeeId);
+
+        assertThat(departmentService.removeWorkerFromDepartment(departmentId, employeeId).changed()).isTrue();
+        assertThat(departmentService.removeFreelancerFromDepartment(departmentId, employeeId).changed()).isTrue();
+
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isNull();
+        assertThat(employeeRepository.countFreelancerMapping(employeeId, departmentId)).isZero();
+        //removing again is a no-op
+        assertThat(departmentService.removeWorkerFromDepartment(departmentId, employeeId).changed()).isFalse();
+    }
+
+    @Test
+    void unknownEmployeeOrDepartmentIsNotAssigned() {
+        assertThat(departmentService.assignWorkerToDepartment(departmentId, Long.MAX_VALUE)).isNull();
+        assertThat(departmentService.assignWorkerToDepartment(Long.MAX_VALUE, employeeId)).isNull();
+        assertThat(departmentService.assignFreelancerToDepartment(Long.MAX_VALUE, employeeId)).isNull();
+        assertThat(employeeRepository.findWorkerDepartmentId(employeeId)).isNull();
+    }
+
+    private Long createDepartment(String title) {
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle(title);
+        return departmentService.createNewDepartment(department).id();
+    }
+}
@@ -0,0 +1,67 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//loads that race with evictions. the eviction is done from inside the loader, i.e. after the load read its rows
+//and before it puts the value.
+class OrgCacheTests {
+
+    private OrgCache orgCache;
+
+    @BeforeEach
+    void setUp() {
+        orgCache = new OrgCache(new ConcurrentMapCacheManager(OrgCache.DEPARTMENTS, OrgCache.EMPLOYEES, OrgCache.MANAGER_DEPARTMENTS));
+    }
+
+    @Test
+    void loadRacingWithAnEvictionOfItsKeyIsNotCached() {
+        orgCache.department(1L, () -> {
+            orgCache.evictDepartments(1L);
+            return department(1L);
+        });
+
+        assertThat(orgCache.cachedDepartment(1L)).isNull();
+    }
+
+    //a steady stream of writes to other departments must not keep this one out of the cache
+    @Test
+    void evictionsOfOtherKeysDontStopALoadFromBeingCached() {
+        orgCache.department(1L, () -> {
+            for (long other = 2; other < 100; other++) orgCache.evictDepartments(other);
+            return department(1L);
+        });
+
+        assertThat(orgCache.cachedDepartment(1L)).isNotNull();
+    }
+
+    @Test
+    void clearDuringALoadStopsItFromBeingCached() {
+        orgCache.department(1L, () -> {
+            orgCache.clear();
+            return department(1L);
+        });
+
+        assertThat(orgCache.cachedDepartment(1L)).isNull();
+    }
+
+    @Test
+    void evictedKeyIsCachedAgainByTheNextLoad() {
+        orgCache.department(1L, () -> department(1L));
+        orgCache.evictDepartments(1L);
+        assertThat(orgCache.cachedDepartment(1L)).isNull();
+
+        orgCache.department(1L, () -> department(1L));
+        assertThat(orgCache.cachedDepartment(1L)).isNotNull();
+    }
+
+    private static DepartmentView department(Long id) {
+        return new DepartmentView(id, "Department " + id, 0L, 0L, null, List.of(), List.of());
+    }
+}
@@ -0,0 +1,189 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.DepartmentView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.dto.EmployeeView;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.DepartmentEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.entities.EmployeeEntity;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.DepartmentRepository;
+import com.tusaryan.tutorial.dataMapping.DataMappingTutorial.repositories.EmployeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//a restart with a snapshot that is older than the database. the changes are made after the snapshot was written (like
+//by another instance while this one was down), the warm start has to evict exactly the departments they touched.
+//own in-memory database, migrated like the real one.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:snapshot-reconcile;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class OrgSnapshotReconcileTests {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private OrgCache orgCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private OrgSnapshotService snapshots;
+
+    private Long hr;
+    private Long sales;
+    private Long untouched;
+
+    private Long hrManager;
+    private Long hrWorker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        hr = department("HR");
+        hrManager = employee("HR manager");
+        departmentService.assignManagerToDepartment(hr, hrManager);
+        hrWorker = employee("HR worker");
+        departmentService.assignWorkerToDepartment(hr, hrWorker);
+        sales = department("Sales");
+        departmentService.assignFreelancerToDepartment(sales, employee("Sales freelancer"));
+        untouched = department("Untouched");
+        departmentService.assignWorkerToDepartment(untouched, employee("Untouched worker"));
+
+        snapshots = new OrgSnapshotService(departmentRepository, employeeRepository, orgCache, transactionManager,
+                true, directory.resolve("org-snapshot.bin"), Duration.ofHours(1), false);
+        snapshots.writeSnapshot();
+    }
+
+    @AfterEach
+    void tearDown() {
+        snapshots.stop();
+    }
+
+    @Test
+    void unchangedDepartmentsArePreloadedAsTheyAre() {
+        restart();
+
+        for (Long departmentId : List.of(hr, sales, untouched)) {
+            DepartmentView preloaded = orgCache.cachedDepartment(departmentId);
+            assertThat(preloaded).isNotNull();
+            orgCache.evictDepartments(departmentId);
+            assertThat(departmentService.getDepartmentById(departmentId)).isEqualTo(preloaded);
+        }
+    }
+
+    @Test
+    void changedDepartmentRowIsEvicted() {
+        jdbcTemplate.update("update departments set title = 'Renamed HR', version = version + 1 where id = ?", hr);
+
+        restart();
+
+        assertEvicted(hr);
+        assertPreloaded(sales, untouched);
+        assertThat(departmentService.getDepartmentById(hr).title()).isEqualTo("Renamed HR");
+    }
+
+    @Test
+    void departmentsOfAMovedMemberAreEvicted() {
+        departmentService.assignWorkerToDepartment(sales, hrWorker);
+
+        restart();
+
+        assertEvicted(hr, sales);
+        assertPreloaded(untouched);
+        assertThat(departmentService.getDepartmentById(hr).workers()).isEmpty();
+        assertThat(ids(departmentService.getDepartmentById(sales).workers())).containsExactly(hrWorker);
+    }
+
+    //written without touching roster_version (like an older version of the application did), found by the employee
+    //that is not in the snapshot
+    @Test
+    void departmentOfANewEmployeeIsEvicted() {
+        Long newcomer = employee("Newcomer");
+        jdbcTemplate.update("insert into freelancer_department_mapping (employee_id, department_id) values (?, ?)", newcomer, sales);
+
+        restart();
+
+        assertEvicted(sales);
+        assertPreloaded(hr, untouched);
+        assertThat(ids(departmentService.getDepartmentById(sales).freelancers())).contains(newcomer);
+    }
+
+    @Test
+    void deletedDepartmentIsEvicted() {
+        jdbcTemplate.update("delete from worker_department_mapping where department_id = ?", sales);
+        jdbcTemplate.update("delete from freelancer_department_mapping where department_id = ?", sales);
+        jdbcTemplate.update("delete from departments where id = ?", sales);
+
+        restart();
+
+        assertEvicted(sales);
+        assertPreloaded(hr, untouched);
+        assertThat(departmentService.getDepartmentById(sales)).isNull();
+    }
+
+    //the manager lookup of the old and of the new manager must not answer from the snapshot either
+    @Test
+    void managerChangeEvictsTheDepartmentAndBothManagers() {
+        Long newManager = employee("New HR manager");
+        departmentService.assignManagerToDepartment(hr, newManager);
+
+        restart();
+
+        assertEvicted(hr);
+        assertPreloaded(sales, untouched);
+        assertThat(departmentService.assignedDepartmentOfManager(hrManager)).isNull();
+        assertThat(departmentService.assignedDepartmentOfManager(newManager).id()).isEqualTo(hr);
+        assertThat(departmentService.getDepartmentById(hr).manager().id()).isEqualTo(newManager);
+    }
+
+    //cold caches, then the warm start of OrgSnapshotService.start()
+    private void restart() {
+        orgCache.clear();
+        snapshots.start();
+    }
+
+    private void assertEvicted(Long... departmentIds) {
+        for (Long departmentId : departmentIds) assertThat(orgCache.cachedDepartment(departmentId)).as("department %d", departmentId).isNull();
+    }
+
+    private void assertPreloaded(Long... departmentIds) {
+        for (Long departmentId : departmentIds) assertThat(orgCache.cachedDepartment(departmentId)).as("department %d", departmentId).isNotNull();
+    }
+
+    private Long department(String title) {
+        DepartmentEntity department = new DepartmentEntity();
+        department.setTitle(title);
+        return departmentService.createNewDepartment(department).id();
+    }
+
+    private Long employee(String name) {
+        return employeeService.createNewEmployee(EmployeeEntity.builder().name(name).build()).id();
+    }
+
+    private static List<Long> ids(List<EmployeeView> employees) {
+        return employees.stream().map(EmployeeView::id).toList();
+    }
+}
@@ -0,0 +1,43 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrgSnapshotTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotReadsBackWhatWasWritten() throws Exception {
+        OrgSnapshot written = new OrgSnapshot(1234L,
+                new long[]{1, 2}, new long[]{3, 0}, new long[]{5, 0}, new long[]{10, OrgSnapshot.NO_MANAGER}, new String[]{"HR", null},
+                new long[]{10, 11, 12}, new long[]{1, 2, 3}, new String[]{"Manager", "Wörker", ""},
+                new long[]{11, 12}, new long[]{1, 2},
+                new long[]{12}, new long[]{1});
+        Path path = directory.resolve("snapshots/org.bin");
+
+        written.writeTo(path);
+        OrgSnapshot read = OrgSnapshot.read(path);
+
+        assertThat(read).usingRecursiveComparison().isEqualTo(written);
+        //only the file itself is left, the temp file was moved over it
+        try (var files = Files.list(path.getParent())) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws Exception {
+        Path path = directory.resolve("not-a-snapshot.bin");
+        Files.writeString(path, "hello, this is not a snapshot");
+
+        assertThatThrownBy(() -> OrgSnapshot.read(path)).hasMessageContaining("not an org snapshot");
+    }
+}
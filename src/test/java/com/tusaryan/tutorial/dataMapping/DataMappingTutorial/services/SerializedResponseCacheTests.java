@@ -0,0 +1,48 @@
+package com.tusaryan.tutorial.dataMapping.DataMappingTutorial.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//an entry is only handed out for the ETag it was serialized with
+class SerializedResponseCacheTests {
+
+    private static final byte[] BYTES = {1, 2, 3};
+
+    private final SerializedResponseCache cache = new SerializedResponseCache(true, DataSize.ofMegabytes(1));
+
+    @Test
+    void bytesAreReturnedForTheirETag() {
+        cache.putDepartment(1L, "1-0-0", BYTES);
+
+        assertThat(cache.department(1L, "1-0-0")).isSameAs(BYTES);
+        assertThat(cache.department(2L, "1-0-0")).isNull();
+    }
+
+    //the department changed since its bytes were put, they must not be served with the new ETag
+    @Test
+    void otherETagIsNotAnswered() {
+        cache.putDepartment(1L, "1-0-0", BYTES);
+
+        assertThat(cache.department(1L, "1-0-1")).isNull();
+    }
+
+    @Test
+    void newerBytesReplaceTheOldOnes() {
+        byte[] newer = {4, 5};
+        cache.putDepartment(1L, "1-0-0", BYTES);
+        cache.putDepartment(1L, "1-0-1", newer);
+
+        assertThat(cache.department(1L, "1-0-1")).isSameAs(newer);
+        assertThat(cache.department(1L, "1-0-0")).isNull();
+    }
+
+    @Test
+    void disabledCacheKeepsNothing() {
+        SerializedResponseCache disabled = new SerializedResponseCache(false, DataSize.ofMegabytes(1));
+        disabled.putDepartment(1L, "1-0-0", BYTES);
+
+        assertThat(disabled.department(1L, "1-0-0")).isNull();
+    }
+}
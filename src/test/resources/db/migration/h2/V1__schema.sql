@@ -0,0 +1,74 @@
+-- h2 version of src/main/resources/db/migration/mysql/V1__schema.sql for the tests and benchmarks (MODE=MySQL).
+-- same tables, columns and indexes. h2 has real sequences, and no collations per column (names compare case sensitive).
+
+create sequence department_seq start with 1 increment by 50;
+create sequence employee_seq start with 1 increment by 50;
+create sequence import_job_seq start with 1 increment by 1;
+
+create table employees (
+    id bigint not null,
+    name varchar(255) not null,
+    version bigint,
+    primary key (id)
+);
+
+create index idx_employees_name on employees (name, id);
+
+create table departments (
+    id bigint not null,
+    title varchar(255) not null,
+    version bigint,
+    roster_version bigint default 0 not null,
+    department_manager bigint,
+    primary key (id),
+    constraint uk_departments_manager unique (department_manager),
+    constraint fk_departments_manager foreign key (department_manager) references employees (id)
+);
+
+create table worker_department_mapping (
+    employee_id bigint not null,
+    department_id bigint not null,
+    primary key (employee_id),
+    constraint fk_worker_mapping_employee foreign key (employee_id) references employees (id),
+    constraint fk_worker_mapping_department foreign key (department_id) references departments (id)
+);
+
+create index idx_worker_mapping_department on worker_department_mapping (department_id, employee_id);
+
+create table freelancer_department_mapping (
+    employee_id bigint not null,
+    department_id bigint not null,
+    primary key (employee_id, department_id),
+    constraint fk_freelancer_mapping_employee foreign key (employee_id) references employees (id),
+    constraint fk_freelancer_mapping_department foreign key (department_id) references departments (id)
+);
+
+create index idx_freelancer_mapping_department on freelancer_department_mapping (department_id, employee_id);
+
+create table import_jobs (
+    id bigint not null,
+    format enum ('CSV','NDJSON') not null,
+    status enum ('CREATED','RUNNING','COMPLETED','INTERRUPTED') not null,
+    processed_rows bigint not null,
+    failed_rows bigint not null,
+    committed_chunks integer not null,
+    failed_chunks integer not null,
+    primary key (id)
+);
+
+create table import_job_errors (
+    import_job_id bigint not null,
+    chunk_index integer not null,
+    first_row bigint not null,
+    last_row bigint not null,
+    message varchar(1000),
+    constraint fk_import_job_errors_job foreign key (import_job_id) references import_jobs (id)
+);
+
+create table import_refs (
+    job_id bigint not null,
+    ref varchar(255) not null,
+    kind enum ('DEPARTMENT','EMPLOYEE') not null,
+    entity_id bigint not null,
+    primary key (job_id, ref)
+);